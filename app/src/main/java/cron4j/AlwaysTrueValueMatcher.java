@@ -32,4 +32,11 @@ class AlwaysTrueValueMatcher implements ValueMatcher {
 		return true;
 	}
 
+	/**
+	 * Every bit is set!
+	 */
+	public long getMask() {
+		return -1L;
+	}
+
 }
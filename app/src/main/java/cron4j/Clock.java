@@ -0,0 +1,104 @@
+/*
+ * cron4j - A pure Java cron-like scheduler
+ * 
+ * Copyright (C) 2007-2010 Carlo Pelliccia (www.sauronsoftware.it)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version
+ * 2.1, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License 2.1 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License version 2.1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package cron4j;
+
+/**
+ * <p>
+ * This interface describes the source of time of a {@link Scheduler}. The
+ * scheduler threads read the current time and wait for the next tick through
+ * the clock set with {@link Scheduler#setClock(Clock)}, which by default is
+ * the system clock. A {@link VirtualClock} can be set instead, to run the
+ * scheduler against a simulated time that moves only when told so.
+ * </p>
+ * 
+ * @since 2.3
+ */
+public interface Clock {
+
+	/**
+	 * Returns the current time, as {@link System#currentTimeMillis()} does.
+	 * 
+	 * @return The difference, measured in milliseconds, between the current
+	 *         time and midnight, January 1, 1970 UTC.
+	 */
+	public long currentTimeMillis();
+
+	/**
+	 * Returns the current value of a monotonic time source, as
+	 * {@link System#nanoTime()} does. The value is meaningful only when
+	 * compared with another value returned by the same clock.
+	 * 
+	 * @return The current value of the time source, in nanoseconds.
+	 */
+	public long nanoTime();
+
+	/**
+	 * Causes the current thread to wait on the given monitor until it is
+	 * notified or the given amount of time, measured by this clock, has
+	 * elapsed. The current thread must own the monitor. As with
+	 * {@link Object#wait(long, int)}, the method may also return earlier, so
+	 * callers should check their condition again.
+	 * 
+	 * @param monitor
+	 *            The monitor.
+	 * @param nanos
+	 *            The maximum time to wait, in nanoseconds, or
+	 *            {@link Long#MAX_VALUE} to wait until notified.
+	 * @throws InterruptedException
+	 *             If the current thread has been interrupted.
+	 */
+	public void waitFor(Object monitor, long nanos)
+			throws InterruptedException;
+
+	/**
+	 * Wakes up every thread waiting on the given monitor, as
+	 * {@link Object#notifyAll()} does. The current thread must own the
+	 * monitor. Threads waiting through
+	 * {@link Clock#waitFor(Object, long)} must be woken up this way, so that
+	 * the clock knows about it.
+	 * 
+	 * @param monitor
+	 *            The monitor.
+	 */
+	public void wakeUp(Object monitor);
+
+	/**
+	 * Called by the scheduler on a thread it has just started, which is going
+	 * to wait through {@link Clock#waitFor(Object, long)}. A clock whose time
+	 * moves by itself returns immediately. A simulated clock returns when the
+	 * thread is waiting or dead, so that its time can't move before the
+	 * thread is ready.
+	 * 
+	 * @param thread
+	 *            The started thread.
+	 */
+	public void awaitWaiting(Thread thread);
+
+	/**
+	 * Called by the scheduler on a thread it has just started, which is not
+	 * going to wait on the clock, in example a launcher. A clock whose time
+	 * moves by itself does nothing. A simulated clock shouldn't move again
+	 * until the thread is dead, so that its work is done at the current time.
+	 * 
+	 * @param thread
+	 *            The started thread.
+	 */
+	public void track(Thread thread);
+
+}
@@ -0,0 +1,346 @@
+/*
+ * cron4j - A pure Java cron-like scheduler
+ * 
+ * Copyright (C) 2007-2010 Carlo Pelliccia (www.sauronsoftware.it)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version
+ * 2.1, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License 2.1 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License version 2.1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package cron4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+/**
+ * <p>
+ * Reads and writes task tables in a compact binary format, so that a
+ * crontab-like file already parsed can be loaded again without parsing its
+ * text.
+ * </p>
+ * <p>
+ * The binary file starts with a header storing the checksum of the source
+ * contents, used to detect stale files. Then every entry stores the pattern
+ * string, the bit masks of the pattern fields and the task. Only the tasks
+ * built by the {@link CronParser} are supported: {@link ProcessTask} and
+ * {@link StaticMethodTask} instances.
+ * </p>
+ * <p>
+ * Binary files are memory-mapped while read. Patterns are shared through the
+ * {@link SchedulingPattern#valueOf(String)} intern cache.
+ * </p>
+ * 
+ * @since 2.3
+ */
+class CompiledTaskTable {
+
+	/**
+	 * The first four bytes of a binary file.
+	 */
+	private static final int MAGIC = 0x434A5442;
+
+	/**
+	 * The version of the format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Type tag for a {@link ProcessTask}.
+	 */
+	private static final byte PROCESS_TASK = 1;
+
+	/**
+	 * Type tag for a {@link StaticMethodTask}.
+	 */
+	private static final byte STATIC_METHOD_TASK = 2;
+
+	/**
+	 * Instantiation prohibited.
+	 */
+	private CompiledTaskTable() {
+	}
+
+	/**
+	 * Writes a table in a binary file. The file is written aside and then
+	 * renamed, so that readers never see it partially written.
+	 * 
+	 * @param table
+	 *            The table.
+	 * @param checksum
+	 *            The checksum of the source contents of the table.
+	 * @param file
+	 *            The binary file.
+	 * @throws IOException
+	 *             I/O error.
+	 * @throws IllegalArgumentException
+	 *             If the table contains a task not built by the
+	 *             {@link CronParser}.
+	 */
+	static void write(TaskTable table, long checksum, File file)
+			throws IOException, IllegalArgumentException {
+		File temp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(temp)));
+		try {
+			int size = table.size();
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(checksum);
+			out.writeInt(size);
+			for (int i = 0; i < size; i++) {
+				SchedulingPattern pattern = table.getSchedulingPattern(i);
+				writeString(out, pattern.toString());
+				long[][] masks = pattern.getFieldMasks();
+				out.writeInt(masks.length);
+				for (int j = 0; j < masks.length; j++) {
+					for (int k = 0; k < 6; k++) {
+						out.writeLong(masks[j][k]);
+					}
+				}
+				Task task = table.getTask(i);
+				if (task instanceof ProcessTask) {
+					ProcessTask aux = (ProcessTask) task;
+					out.writeByte(PROCESS_TASK);
+					writeStrings(out, aux.getCommand());
+					writeStrings(out, aux.getEnvs());
+					writeFile(out, aux.getDirectory());
+					writeFile(out, aux.getStdinFile());
+					writeFile(out, aux.getStdoutFile());
+					writeFile(out, aux.getStderrFile());
+				} else if (task instanceof StaticMethodTask) {
+					StaticMethodTask aux = (StaticMethodTask) task;
+					out.writeByte(STATIC_METHOD_TASK);
+					writeString(out, aux.getClassName());
+					writeString(out, aux.getMethodName());
+					writeStrings(out, aux.getArgs());
+				} else {
+					throw new IllegalArgumentException(
+							"Unsupported task type: " + task.getClass().getName());
+				}
+			}
+		} catch (IOException e) {
+			out.close();
+			temp.delete();
+			throw e;
+		} catch (RuntimeException e) {
+			out.close();
+			temp.delete();
+			throw e;
+		}
+		out.close();
+		if (!temp.renameTo(file)) {
+			// Some platforms can't rename over an existing file.
+			file.delete();
+			if (!temp.renameTo(file)) {
+				temp.delete();
+				throw new IOException("Cannot write " + file.getAbsolutePath());
+			}
+		}
+	}
+
+	/**
+	 * Reads a table from a binary file.
+	 * 
+	 * @param file
+	 *            The binary file.
+	 * @param checksum
+	 *            The checksum of the current source contents.
+	 * @return The table, or null if the file doesn't exist, if it isn't valid
+	 *         or if it has been written from different source contents.
+	 * @throws IOException
+	 *             I/O error.
+	 */
+	static TaskTable read(File file, long checksum) throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+		FileInputStream stream = new FileInputStream(file);
+		try {
+			FileChannel channel = stream.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size());
+			return read(buffer, checksum);
+		} finally {
+			try {
+				stream.close();
+			} catch (Throwable t) {
+				;
+			}
+		}
+	}
+
+	/**
+	 * Reads a table from the contents of a binary file.
+	 * 
+	 * @param buffer
+	 *            The contents of the binary file.
+	 * @param checksum
+	 *            The checksum of the current source contents.
+	 * @return The table, or null if the contents aren't valid or if they have
+	 *         been written from different source contents.
+	 */
+	private static TaskTable read(ByteBuffer buffer, long checksum) {
+		try {
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+					|| buffer.getLong() != checksum) {
+				return null;
+			}
+			int size = buffer.getInt();
+			if (size < 0 || size > buffer.remaining()) {
+				return null;
+			}
+			TaskTable table = new TaskTable(size);
+			HashMap patterns = new HashMap();
+			for (int i = 0; i < size; i++) {
+				String string = readString(buffer);
+				int groups = buffer.getInt();
+				if (string == null || groups < 1
+						|| groups > buffer.remaining() / 48) {
+					return null;
+				}
+				SchedulingPattern pattern = (SchedulingPattern) patterns
+						.get(string);
+				if (pattern != null) {
+					// Already built, skips the masks.
+					buffer.position(buffer.position() + groups * 48);
+				} else {
+					long[][] masks = new long[groups][6];
+					for (int j = 0; j < groups; j++) {
+						for (int k = 0; k < 6; k++) {
+							masks[j][k] = buffer.getLong();
+						}
+					}
+					pattern = SchedulingPattern.valueOf(string, masks);
+					patterns.put(string, pattern);
+				}
+				Task task;
+				byte type = buffer.get();
+				if (type == PROCESS_TASK) {
+					String[] command = readStrings(buffer);
+					String[] envs = readStrings(buffer);
+					File directory = readFile(buffer);
+					ProcessTask process = new ProcessTask(command, envs,
+							directory);
+					process.setStdinFile(readFile(buffer));
+					process.setStdoutFile(readFile(buffer));
+					process.setStderrFile(readFile(buffer));
+					task = process;
+				} else if (type == STATIC_METHOD_TASK) {
+					String className = readString(buffer);
+					String methodName = readString(buffer);
+					String[] args = readStrings(buffer);
+					task = new StaticMethodTask(className, methodName, args);
+				} else {
+					return null;
+				}
+				table.add(pattern, task);
+			}
+			return table;
+		} catch (BufferUnderflowException e) {
+			// Truncated file.
+			return null;
+		}
+	}
+
+	/**
+	 * Writes a string, which can be null.
+	 */
+	private static void writeString(DataOutputStream out, String str)
+			throws IOException {
+		if (str == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = str.getBytes("UTF-8");
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Writes a string array, which can be null.
+	 */
+	private static void writeStrings(DataOutputStream out, String[] strs)
+			throws IOException {
+		if (strs == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(strs.length);
+			for (int i = 0; i < strs.length; i++) {
+				writeString(out, strs[i]);
+			}
+		}
+	}
+
+	/**
+	 * Writes a file path, which can be null.
+	 */
+	private static void writeFile(DataOutputStream out, File file)
+			throws IOException {
+		writeString(out, file != null ? file.getPath() : null);
+	}
+
+	/**
+	 * Reads a string, which can be null.
+	 */
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		} else if (length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		try {
+			return new String(bytes, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			// Never happens, UTF-8 is always supported.
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Reads a string array, which can be null.
+	 */
+	private static String[] readStrings(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		} else if (length > buffer.remaining() / 4) {
+			throw new BufferUnderflowException();
+		}
+		String[] ret = new String[length];
+		for (int i = 0; i < length; i++) {
+			ret[i] = readString(buffer);
+		}
+		return ret;
+	}
+
+	/**
+	 * Reads a file path, which can be null.
+	 */
+	private static File readFile(ByteBuffer buffer) {
+		String path = readString(buffer);
+		return path != null ? new File(path) : null;
+	}
+
+}
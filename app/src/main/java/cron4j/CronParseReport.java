@@ -0,0 +1,133 @@
+/*
+ * cron4j - A pure Java cron-like scheduler
+ * 
+ * Copyright (C) 2007-2010 Carlo Pelliccia (www.sauronsoftware.it)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version
+ * 2.1, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License 2.1 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License version 2.1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package cron4j;
+
+import java.util.ArrayList;
+
+/**
+ * <p>
+ * The outcome of a bulk parsing performed with
+ * {@link CronParser#parseBulk(java.io.Reader)}: the table of the parsed tasks,
+ * plus a report of the lines that have been discarded because invalid.
+ * </p>
+ * <p>
+ * Errors are listed in the same order of the lines in the source. Line numbers
+ * start from 1.
+ * </p>
+ * 
+ * @since 2.3
+ */
+public class CronParseReport {
+
+	/**
+	 * The parsed tasks.
+	 */
+	private TaskTable taskTable;
+
+	/**
+	 * Line numbers of the invalid lines.
+	 */
+	private ArrayList errorLines = new ArrayList();
+
+	/**
+	 * Causes of the errors.
+	 */
+	private ArrayList errorCauses = new ArrayList();
+
+	/**
+	 * Builds the report.
+	 * 
+	 * @param taskTable
+	 *            The parsed tasks.
+	 */
+	CronParseReport(TaskTable taskTable) {
+		this.taskTable = taskTable;
+	}
+
+	/**
+	 * Adds an error to the report.
+	 * 
+	 * @param line
+	 *            The number of the invalid line.
+	 * @param cause
+	 *            The error cause.
+	 */
+	void addError(int line, Exception cause) {
+		errorLines.add(new Integer(line));
+		errorCauses.add(cause);
+	}
+
+	/**
+	 * Returns the table of the parsed tasks.
+	 * 
+	 * @return The table of the parsed tasks.
+	 */
+	public TaskTable getTaskTable() {
+		return taskTable;
+	}
+
+	/**
+	 * Returns the number of the invalid lines.
+	 * 
+	 * @return The number of the invalid lines.
+	 */
+	public int getErrorCount() {
+		return errorLines.size();
+	}
+
+	/**
+	 * Returns the number, starting from 1, of the line of an error.
+	 * 
+	 * @param index
+	 *            The error index.
+	 * @return The number of the invalid line.
+	 * @throws IndexOutOfBoundsException
+	 *             If the supplied index is out of range.
+	 */
+	public int getErrorLineNumber(int index) throws IndexOutOfBoundsException {
+		return ((Integer) errorLines.get(index)).intValue();
+	}
+
+	/**
+	 * Returns the message of an error.
+	 * 
+	 * @param index
+	 *            The error index.
+	 * @return The reason why the line is invalid.
+	 * @throws IndexOutOfBoundsException
+	 *             If the supplied index is out of range.
+	 */
+	public String getErrorMessage(int index) throws IndexOutOfBoundsException {
+		return ((Exception) errorCauses.get(index)).getMessage();
+	}
+
+	/**
+	 * Returns the exception thrown parsing the line of an error.
+	 * 
+	 * @param index
+	 *            The error index.
+	 * @return The error cause.
+	 * @throws IndexOutOfBoundsException
+	 *             If the supplied index is out of range.
+	 */
+	public Exception getErrorCause(int index) throws IndexOutOfBoundsException {
+		return (Exception) errorCauses.get(index);
+	}
+
+}
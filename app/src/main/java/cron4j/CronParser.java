@@ -19,15 +19,25 @@
 package cron4j;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.Reader;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
 
 /**
  * <p>
@@ -145,6 +155,11 @@ import java.util.ArrayList;
  * channel.
  * </p>
  * <p>
+ * Large sources can be parsed with the <em>parseBulk</em> methods, which split
+ * the lines in chunks parsed in parallel, and which report the invalid lines
+ * in a {@link CronParseReport} instead of printing them.
+ * </p>
+ * <p>
  * Valid examples:
  * </p>
  * 
@@ -161,6 +176,11 @@ import java.util.ArrayList;
  */
 public class CronParser {
 
+	/**
+	 * How many lines are parsed by a single task of a bulk parsing.
+	 */
+	private static final int CHUNK_SIZE = 1024;
+
 	/**
 	 * Instantiation prohibited.
 	 */
@@ -206,6 +226,80 @@ public class CronParser {
 		}
 	}
 
+	/**
+	 * <p>
+	 * Builds a task list reading it from a file, using a compiled copy of it
+	 * when available.
+	 * </p>
+	 * 
+	 * <p>
+	 * The compiled file stores the parsed tasks in a binary format, together
+	 * with the checksum of the source contents. If the checksum matches the
+	 * current contents of the source file, the tasks are loaded from the
+	 * compiled file, without parsing the source text. Otherwise the source
+	 * file is parsed as {@link CronParser#parse(File)} does, and the compiled
+	 * file is written again for the next call.
+	 * </p>
+	 * 
+	 * @param file
+	 *            The source file.
+	 * @param compiledFile
+	 *            The compiled file, which may not exist yet.
+	 * @return The task table parsed from the file.
+	 * @throws IOException
+	 *             I/O error reading the source file.
+	 * @see CronParser#compile(File, File)
+	 * @since 2.3
+	 */
+	public static TaskTable parse(File file, File compiledFile)
+			throws IOException {
+		byte[] contents = read(file);
+		long checksum = checksum(contents);
+		TaskTable table = null;
+		try {
+			table = CompiledTaskTable.read(compiledFile, checksum);
+		} catch (IOException e) {
+			// Broken compiled file, parse the source.
+		}
+		if (table == null) {
+			table = parse(new ByteArrayInputStream(contents));
+			try {
+				CompiledTaskTable.write(table, checksum, compiledFile);
+			} catch (IOException e) {
+				Exception e1 = new Exception("Cannot write compiled cron file: "
+						+ compiledFile.getAbsolutePath(), e);
+				e1.printStackTrace();
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * <p>
+	 * Parses a crontab-like file and stores the tasks in a compiled file, that
+	 * can be loaded by {@link CronParser#parse(File, File)} without parsing
+	 * the source text again.
+	 * </p>
+	 * 
+	 * <p>
+	 * The source file is treated as UTF-8. Invalid lines are discarded as
+	 * {@link CronParser#parse(File)} does.
+	 * </p>
+	 * 
+	 * @param file
+	 *            The source file.
+	 * @param compiledFile
+	 *            The compiled file.
+	 * @throws IOException
+	 *             I/O error.
+	 * @since 2.3
+	 */
+	public static void compile(File file, File compiledFile) throws IOException {
+		byte[] contents = read(file);
+		TaskTable table = parse(new ByteArrayInputStream(contents));
+		CompiledTaskTable.write(table, checksum(contents), compiledFile);
+	}
+
 	/**
 	 * <p>
 	 * Builds a task list reading it from an URL.
@@ -309,6 +403,141 @@ public class CronParser {
 		return table;
 	}
 
+	/**
+	 * <p>
+	 * Builds a task list reading it from a file, parsing the lines in
+	 * parallel.
+	 * </p>
+	 * 
+	 * <p>
+	 * The file is treated as UTF-8.
+	 * </p>
+	 * 
+	 * @param file
+	 *            The file.
+	 * @return The task table parsed from the file, and the report of the
+	 *         invalid lines.
+	 * @throws IOException
+	 *             I/O error.
+	 * @see CronParser#parseBulk(Reader)
+	 * @since 2.3
+	 */
+	public static CronParseReport parseBulk(File file) throws IOException {
+		InputStream stream = new FileInputStream(file);
+		// The reader is closed by parseBulk.
+		return parseBulk(new InputStreamReader(stream, "UTF-8"));
+	}
+
+	/**
+	 * <p>
+	 * Builds a task list reading it from a reader, parsing the lines in
+	 * parallel with a temporary pool of threads, one for each available
+	 * processor.
+	 * </p>
+	 * 
+	 * @param reader
+	 *            The reader.
+	 * @return The task table parsed from the contents in the reader, and the
+	 *         report of the invalid lines.
+	 * @throws IOException
+	 *             I/O error.
+	 * @see CronParser#parseBulk(Reader, ExecutorService)
+	 * @since 2.3
+	 */
+	public static CronParseReport parseBulk(Reader reader) throws IOException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			return parseBulk(reader, executor);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Builds a task list reading it from a reader, parsing the lines in
+	 * parallel with the given executor service.
+	 * </p>
+	 * 
+	 * <p>
+	 * The lines are split in chunks, each one parsed by a different task. The
+	 * resulting tables are merged in a single table, keeping the order of the
+	 * lines in the source.
+	 * </p>
+	 * 
+	 * <p>
+	 * Syntax and semantics errors in the source reader are not blocking.
+	 * Invalid lines are discarded, and they are listed in the returned report
+	 * with their number and their error message.
+	 * </p>
+	 * 
+	 * @param reader
+	 *            The reader.
+	 * @param executor
+	 *            The executor service running the parsing tasks. It is not
+	 *            shut down at the end of the parsing.
+	 * @return The task table parsed from the contents in the reader, and the
+	 *         report of the invalid lines.
+	 * @throws IOException
+	 *             I/O error, or the parsing has been interrupted.
+	 * @since 2.3
+	 */
+	public static CronParseReport parseBulk(Reader reader,
+			ExecutorService executor) throws IOException {
+		// Reads the lines.
+		ArrayList lines = new ArrayList();
+		BufferedReader bufferedReader = new BufferedReader(reader);
+		try {
+			String line;
+			while ((line = bufferedReader.readLine()) != null) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		// Parses the chunks.
+		int size = lines.size();
+		ArrayList futures = new ArrayList();
+		for (int from = 0; from < size; from += CHUNK_SIZE) {
+			int to = Math.min(from + CHUNK_SIZE, size);
+			futures.add(executor.submit(new ChunkParser(lines.subList(from,
+					to), from + 1)));
+		}
+		// Merges the results.
+		CronParseReport ret = new CronParseReport(new TaskTable(size));
+		TaskTable table = ret.getTaskTable();
+		for (int i = 0; i < futures.size(); i++) {
+			CronParseReport chunk;
+			try {
+				chunk = (CronParseReport) ((Future) futures.get(i)).get();
+			} catch (InterruptedException e) {
+				for (int j = i; j < futures.size(); j++) {
+					((Future) futures.get(j)).cancel(true);
+				}
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Parsing interrupted");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw (RuntimeException) cause;
+			}
+			TaskTable aux = chunk.getTaskTable();
+			int count = aux.size();
+			for (int j = 0; j < count; j++) {
+				table.add(aux.getSchedulingPattern(j), aux.getTask(j));
+			}
+			count = chunk.getErrorCount();
+			for (int j = 0; j < count; j++) {
+				ret.addError(chunk.getErrorLineNumber(j),
+						chunk.getErrorCause(j));
+			}
+		}
+		return ret;
+	}
+
 	/**
 	 * Parses a crontab-like line.
 	 * 
@@ -326,20 +555,14 @@ public class CronParser {
 			return;
 		}
 		// Detecting the pattern.
-		int size = line.length();
-		String pattern = null;
-		for (int i = size; i >= 0; i--) {
-			String aux = line.substring(0, i);
-			if (SchedulingPattern.validate(aux)) {
-				pattern = aux;
-				break;
-			}
-		}
-		if (pattern == null) {
+		int end = findPatternEnd(line);
+		if (end == -1) {
 			throw new Exception("Invalid cron line: " + line);
 		}
-		line = line.substring(pattern.length());
-		size = line.length();
+		SchedulingPattern pattern = SchedulingPattern.valueOf(line.substring(
+				0, end));
+		line = line.substring(end);
+		int size = line.length();
 		// Splitting the line
 		ArrayList splitted = new ArrayList();
 		StringBuffer current = null;
@@ -502,7 +725,151 @@ public class CronParser {
 			task = process;
 		}
 		// End.
-		table.add(new SchedulingPattern(pattern), task);
+		table.add(pattern, task);
+	}
+
+	/**
+	 * Finds where the scheduling pattern of a crontab-like line ends, reading
+	 * six space separated fields for every group of the pattern. Groups are
+	 * joined by the pipe character, which can be surrounded by spaces or not.
+	 * 
+	 * @param line
+	 *            The trimmed crontab-like line.
+	 * @return The index of the first character after the pattern, or -1 if the
+	 *         line doesn't start with six fields for each group.
+	 */
+	private static int findPatternEnd(String line) {
+		int size = line.length();
+		int fields = 0;
+		int i = 0;
+		for (;;) {
+			// Skips the spaces.
+			while (i < size && isSpace(line.charAt(i))) {
+				i++;
+			}
+			if (fields == 6) {
+				if (i < size && line.charAt(i) == '|') {
+					// Another group follows.
+					fields = 0;
+					i++;
+					continue;
+				}
+				return i;
+			}
+			if (i == size || line.charAt(i) == '|') {
+				// Missing fields.
+				return -1;
+			}
+			// Reads the field.
+			while (i < size) {
+				char c = line.charAt(i);
+				if (isSpace(c) || c == '|') {
+					break;
+				}
+				i++;
+			}
+			fields++;
+		}
+	}
+
+	/**
+	 * Checks if a character separates the fields of a scheduling pattern.
+	 * 
+	 * @param c
+	 *            The character.
+	 * @return true if the character is a space or a tab.
+	 */
+	private static boolean isSpace(char c) {
+		return c == ' ' || c == '\t';
+	}
+
+	/**
+	 * A task parsing a chunk of lines during a bulk parsing.
+	 */
+	private static class ChunkParser implements Callable {
+
+		/**
+		 * The lines.
+		 */
+		private List lines;
+
+		/**
+		 * The number of the first line.
+		 */
+		private int firstLine;
+
+		/**
+		 * Builds the task.
+		 * 
+		 * @param lines
+		 *            The lines.
+		 * @param firstLine
+		 *            The number of the first line.
+		 */
+		public ChunkParser(List lines, int firstLine) {
+			this.lines = lines;
+			this.firstLine = firstLine;
+		}
+
+		/**
+		 * Parses the lines, returning a report of the chunk.
+		 */
+		public Object call() {
+			int size = lines.size();
+			CronParseReport ret = new CronParseReport(new TaskTable(size));
+			TaskTable table = ret.getTaskTable();
+			for (int i = 0; i < size; i++) {
+				try {
+					parseLine(table, (String) lines.get(i));
+				} catch (Exception e) {
+					ret.addError(firstLine + i, e);
+				}
+			}
+			return ret;
+		}
+
+	}
+
+	/**
+	 * Reads the whole contents of a file.
+	 * 
+	 * @param file
+	 *            The file.
+	 * @return The file contents.
+	 * @throws IOException
+	 *             I/O error.
+	 */
+	static byte[] read(File file) throws IOException {
+		InputStream stream = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(
+					(int) Math.min(file.length() + 1, Integer.MAX_VALUE - 8));
+			byte[] buffer = new byte[8192];
+			int l;
+			while ((l = stream.read(buffer)) != -1) {
+				out.write(buffer, 0, l);
+			}
+			return out.toByteArray();
+		} finally {
+			try {
+				stream.close();
+			} catch (Throwable t) {
+				;
+			}
+		}
+	}
+
+	/**
+	 * Computes the checksum of the contents of a crontab-like file.
+	 * 
+	 * @param contents
+	 *            The file contents.
+	 * @return The CRC-32 checksum of the contents.
+	 */
+	static long checksum(byte[] contents) {
+		CRC32 crc = new CRC32();
+		crc.update(contents);
+		return crc.getValue();
 	}
 
 	/**
@@ -26,6 +26,11 @@ import java.util.ArrayList;
  * to validate a value, this ValueMatcher checks if it is in the array and, if
  * not, checks whether the last-day-of-month setting applies.
  * </p>
+ * <p>
+ * A bit mask of the accepted days is precomputed for every month, both for
+ * leap and for common years, with the last-day-of-month setting already
+ * applied.
+ * </p>
  * 
  * @author Paul Fernley
  */
@@ -33,6 +38,13 @@ class DayOfMonthValueMatcher extends IntArrayValueMatcher {
 
 	private static final int[] lastDays = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
 
+	/**
+	 * The accepted days for each month, as bit masks. The mask for a month is
+	 * at index <em>(month - 1) * 2</em> for common years, and at the
+	 * following index for leap years.
+	 */
+	private long[] masks = new long[24];
+
 	/**
 	 * Builds the ValueMatcher.
 	 * 
@@ -44,6 +56,37 @@ class DayOfMonthValueMatcher extends IntArrayValueMatcher {
 	 */
 	public DayOfMonthValueMatcher(ArrayList integers) {
 		super(integers);
+		buildMasks();
+	}
+
+	/**
+	 * Builds the ValueMatcher from a bit mask of the accepted values, as
+	 * returned by {@link IntArrayValueMatcher#getMask()}. The last-day-of-month
+	 * setting is the bit 32.
+	 * 
+	 * @param mask
+	 *            The accepted values, as a bit mask.
+	 */
+	DayOfMonthValueMatcher(long mask) {
+		super(mask);
+		buildMasks();
+	}
+
+	/**
+	 * Computes the mask of the accepted days for each month.
+	 */
+	private void buildMasks() {
+		boolean lastDay = match(32);
+		for (int month = 1; month <= 12; month++) {
+			for (int leap = 0; leap < 2; leap++) {
+				long mask = getMask();
+				if (lastDay) {
+					int last = (leap == 1 && month == 2) ? 29 : lastDays[month - 1];
+					mask |= 1L << last;
+				}
+				masks[((month - 1) << 1) | leap] = mask;
+			}
+		}
 	}
 
 	/**
@@ -51,7 +94,23 @@ class DayOfMonthValueMatcher extends IntArrayValueMatcher {
 	 * last-day-of-month setting applies.
 	 */
 	public boolean match(int value, int month, boolean isLeapYear) {
-		return (super.match(value) || (value > 27 && match(32) && isLastDayOfMonth(value, month, isLeapYear)));
+		return value >= 0 && value < 64
+				&& ((getMask(month, isLeapYear) >>> value) & 1L) != 0;
+	}
+
+	/**
+	 * Returns the accepted days of the given month as a bit mask, with the
+	 * last-day-of-month setting already applied.
+	 * 
+	 * @param month
+	 *            The month, from 1 to 12.
+	 * @param isLeapYear
+	 *            Is the month in a leap year?
+	 * @return The accepted days, as a bit mask.
+	 * @since 2.3
+	 */
+	public long getMask(int month, boolean isLeapYear) {
+		return masks[((month - 1) << 1) | (isLeapYear ? 1 : 0)];
 	}
 
 	public boolean isLastDayOfMonth(int value, int month, boolean isLeapYear) {
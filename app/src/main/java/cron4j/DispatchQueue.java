@@ -0,0 +1,292 @@
+/*
+ * cron4j - A pure Java cron-like scheduler
+ * 
+ * Copyright (C) 2007-2010 Carlo Pelliccia (www.sauronsoftware.it)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version
+ * 2.1, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License 2.1 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License version 2.1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package cron4j;
+
+import java.util.LinkedList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * A bounded queue between the launchers and the task executions, used by a
+ * {@link Scheduler} whose dispatch queue has been enabled with
+ * {@link Scheduler#setDispatchQueueCapacity(int)}. A fixed number of worker
+ * threads take the queued launches and run them, so that a burst of due
+ * tasks is spread over time instead of being started all at once.
+ * </p>
+ * <p>
+ * Launches are taken by priority, see {@link Task#setPriority(int)}, and in
+ * launch order within the same priority. When the queue is full, a new launch
+ * is handled according to the overflow policy of the scheduler.
+ * </p>
+ * 
+ * @since 2.3
+ */
+class DispatchQueue {
+
+	/**
+	 * The queued executors, one list for every priority.
+	 */
+	private LinkedList[] lanes = new LinkedList[Task.PRIORITY_HIGH + 1];
+
+	/**
+	 * The executors waiting for room in the queue, queued by threads which
+	 * can't wait. It holds up to {@link DispatchQueue#capacity} executors.
+	 */
+	private LinkedList backlog = new LinkedList();
+
+	/**
+	 * The maximum number of queued executors, and of executors in the
+	 * backlog.
+	 */
+	private int capacity;
+
+	/**
+	 * The overflow policy.
+	 */
+	private int overflowPolicy;
+
+	/**
+	 * The number of queued executors.
+	 */
+	private int size = 0;
+
+	/**
+	 * true once the queue has been shut down.
+	 */
+	private boolean closed = false;
+
+	/**
+	 * The worker threads.
+	 */
+	private Thread[] workers;
+
+	/**
+	 * A lock, for synchronization purposes.
+	 */
+	private ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * Signalled when an executor is queued.
+	 */
+	private Condition notEmpty = lock.newCondition();
+
+	/**
+	 * Signalled when an executor is taken from the queue.
+	 */
+	private Condition notFull = lock.newCondition();
+
+	/**
+	 * Builds the queue and its worker threads, which are not started yet.
+	 * 
+	 * @param scheduler
+	 *            The owner scheduler.
+	 * @param capacity
+	 *            The maximum number of queued executors.
+	 * @param parallelism
+	 *            The number of worker threads.
+	 * @param overflowPolicy
+	 *            The overflow policy.
+	 * @param threadFactory
+	 *            The factory of the worker threads, or null to build plain
+	 *            ones.
+	 * @param daemon
+	 *            true to build daemon worker threads. Ignored if a thread
+	 *            factory is given, since the factory decides it.
+	 */
+	public DispatchQueue(Scheduler scheduler, int capacity, int parallelism,
+			int overflowPolicy, ThreadFactory threadFactory, boolean daemon) {
+		this.capacity = capacity;
+		this.overflowPolicy = overflowPolicy;
+		for (int i = 0; i < lanes.length; i++) {
+			lanes[i] = new LinkedList();
+		}
+		workers = new Thread[parallelism];
+		for (int i = 0; i < parallelism; i++) {
+			Thread t;
+			if (threadFactory != null) {
+				t = threadFactory.newThread(new Worker());
+			} else {
+				t = new Thread(new Worker());
+				t.setDaemon(daemon);
+			}
+			t.setName("cron4j::scheduler[" + scheduler.getGuid()
+					+ "]::dispatcher[" + GUIDGenerator.generate() + "]");
+			workers[i] = t;
+		}
+	}
+
+	/**
+	 * Starts the worker threads.
+	 */
+	public void start() {
+		for (int i = 0; i < workers.length; i++) {
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Stops the worker threads and waits for their death. Both the queue and
+	 * its backlog must be empty, since the workers leave as soon as the queue
+	 * is empty: every executor put in the queue must have ended.
+	 */
+	public void shutdown() {
+		lock.lock();
+		try {
+			closed = true;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		for (int i = 0; i < workers.length; i++) {
+			do {
+				try {
+					workers[i].join();
+					break;
+				} catch (InterruptedException e) {
+					continue;
+				}
+			} while (true);
+		}
+	}
+
+	/**
+	 * Queues an executor. If the queue is full, the overflow policy decides:
+	 * {@link Scheduler#OVERFLOW_BLOCK} waits for room or, if waiting is not
+	 * allowed, puts the executor in a backlog which enters the queue, ahead
+	 * of any waiting thread, as soon as room is made; the backlog has the
+	 * capacity of the queue, and the given executor is discarded when it is
+	 * full too,
+	 * {@link Scheduler#OVERFLOW_REJECT} discards the given executor and
+	 * {@link Scheduler#OVERFLOW_DROP_OLDEST} discards the oldest queued
+	 * executor with the lowest priority, unless its priority is higher than
+	 * the given one.
+	 * 
+	 * @param executor
+	 *            The executor.
+	 * @param wait
+	 *            false if the current thread can't wait for room, since it is
+	 *            a thread of the scheduler.
+	 * @return The discarded executor, or null if none has been discarded. The
+	 *         given executor is discarded if the queue has been shut down.
+	 * @throws InterruptedException
+	 *             If the current thread has been interrupted while waiting for
+	 *             room in the queue.
+	 */
+	public TaskExecutor put(TaskExecutor executor, boolean wait)
+			throws InterruptedException {
+		int priority = executor.getTask().getPriority();
+		TaskExecutor discarded = null;
+		lock.lockInterruptibly();
+		try {
+			if (closed) {
+				return executor;
+			}
+			if (size >= capacity) {
+				if (overflowPolicy == Scheduler.OVERFLOW_BLOCK) {
+					if (!wait) {
+						if (backlog.size() >= capacity) {
+							return executor;
+						}
+						backlog.addLast(executor);
+						return null;
+					}
+					while (size >= capacity && !closed) {
+						notFull.await();
+					}
+					if (closed) {
+						return executor;
+					}
+				} else if (overflowPolicy == Scheduler.OVERFLOW_DROP_OLDEST) {
+					int lowest = 0;
+					while (lanes[lowest].size() == 0) {
+						lowest++;
+					}
+					if (lowest > priority) {
+						return executor;
+					}
+					discarded = (TaskExecutor) lanes[lowest].removeFirst();
+					size--;
+				} else {
+					return executor;
+				}
+			}
+			lanes[priority].addLast(executor);
+			size++;
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+		return discarded;
+	}
+
+	/**
+	 * Takes the first executor with the highest priority, waiting for one if
+	 * the queue is empty. Workers leave only when the queue is shut down, so
+	 * interrupts are ignored: they are meant for the tasks, which could have
+	 * been stopped just as they were ending.
+	 * 
+	 * @return The executor, or null if the queue has been shut down.
+	 */
+	private TaskExecutor take() {
+		lock.lock();
+		try {
+			while (size == 0) {
+				if (closed) {
+					return null;
+				}
+				notEmpty.awaitUninterruptibly();
+			}
+			int i = lanes.length - 1;
+			while (lanes[i].size() == 0) {
+				i--;
+			}
+			TaskExecutor ret = (TaskExecutor) lanes[i].removeFirst();
+			if (backlog.size() > 0) {
+				TaskExecutor next = (TaskExecutor) backlog.removeFirst();
+				lanes[next.getTask().getPriority()].addLast(next);
+			} else {
+				size--;
+				notFull.signal();
+			}
+			return ret;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * A worker, running the queued executors one at a time.
+	 */
+	private class Worker implements Runnable {
+
+		public void run() {
+			TaskExecutor executor;
+			while ((executor = take()) != null) {
+				executor.runQueued();
+				// Clears any interrupt meant for the task.
+				Thread.interrupted();
+			}
+		}
+
+	}
+
+}
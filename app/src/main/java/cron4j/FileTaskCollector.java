@@ -18,15 +18,38 @@
  */
 package cron4j;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * <p>
  * A {@link TaskCollector} implementation, reading the task list from a group of
  * files.
  * </p>
+ * <p>
+ * The table parsed from each file is cached. A file is read again only when
+ * its size or its last modification time changes, and it is parsed again only
+ * if its contents checksum changes too. While no file changes, the same
+ * read-only table is returned every time. Since an edit which keeps the size
+ * can also keep the modification time, if it happens within the resolution
+ * of the file system timestamps, a file modified shortly before being read
+ * is read again at every check, until its timestamp is old enough.
+ * </p>
+ * <p>
+ * A file which can't be read, since it is missing for instance, is cached as
+ * a failure along with its size and modification time: it contributes no
+ * task, and it is tried again, and the failure reported again, only when its
+ * size or its modification time changes.
+ * </p>
+ * <p>
+ * When watched by a {@link FileWatcherThread}, the files are checked by the
+ * watcher only, and {@link FileTaskCollector#getTasks()} returns the table
+ * published by it, without any file system access and without locking.
+ * Files are always read and parsed out of the collector monitor, so that a
+ * slow parse never blocks the scheduler.
+ * </p>
  * 
  * @author Carlo Pelliccia
  * @since 2.0
@@ -34,9 +57,50 @@ import java.util.ArrayList;
 class FileTaskCollector implements TaskCollector {
 
 	/**
-	 * File list.
+	 * The coarsest resolution of the file modification times, in millis.
+	 */
+	private static final long MTIME_RESOLUTION = 2000;
+
+	/**
+	 * File list. Replaced, never modified, so that it can be read without
+	 * locking.
+	 */
+	private volatile File[] files = new File[0];
+
+	/**
+	 * Incremented every time the file list changes.
+	 */
+	private volatile int version = 0;
+
+	/**
+	 * The {@link CachedFile} instances, mapped by file. Guarded by
+	 * {@link FileTaskCollector#collectLock}.
+	 */
+	private HashMap cache = new HashMap();
+
+	/**
+	 * The last table returned by {@link FileTaskCollector#collect()}. Guarded
+	 * by {@link FileTaskCollector#collectLock}.
+	 */
+	private TaskTable tasks = null;
+
+	/**
+	 * The file list version the last table has been built from.
+	 */
+	private int tasksVersion = -1;
+
+	/**
+	 * The table published by a {@link FileWatcherThread}, or null if the files
+	 * are not watched.
 	 */
-	private ArrayList files = new ArrayList();
+	private volatile TaskTable published = null;
+
+	/**
+	 * Serializes the checks of the files. The files are read and parsed
+	 * holding this lock only, so that a slow parse never blocks the methods
+	 * synchronized on the collector itself.
+	 */
+	private Object collectLock = new Object();
 
 	/**
 	 * Adds a file.
@@ -45,7 +109,12 @@ class FileTaskCollector implements TaskCollector {
 	 *            The file.
 	 */
 	public synchronized void addFile(File file) {
-		files.add(file);
+		File[] aux = new File[files.length + 1];
+		System.arraycopy(files, 0, aux, 0, files.length);
+		aux[files.length] = file;
+		files = aux;
+		version++;
+		published = null;
 	}
 
 	/**
@@ -55,7 +124,28 @@ class FileTaskCollector implements TaskCollector {
 	 *            The file.
 	 */
 	public synchronized void removeFile(File file) {
-		files.remove(file);
+		File[] aux = files;
+		for (int i = 0; i < aux.length; i++) {
+			if (aux[i].equals(file)) {
+				File[] ret = new File[aux.length - 1];
+				System.arraycopy(aux, 0, ret, 0, i);
+				System.arraycopy(aux, i + 1, ret, i, aux.length - i - 1);
+				files = ret;
+				version++;
+				published = null;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Counts how many files are currently collected by this collector. It
+	 * doesn't lock.
+	 * 
+	 * @return The number of collected files.
+	 */
+	public int size() {
+		return files.length;
 	}
 
 	/**
@@ -63,39 +153,179 @@ class FileTaskCollector implements TaskCollector {
 	 * 
 	 * @return The file list.
 	 */
-	public synchronized File[] getFiles() {
-		int size = files.size();
-		File[] ret = new File[size];
-		for (int i = 0; i < size; i++) {
-			ret[i] = (File) files.get(i);
+	public File[] getFiles() {
+		return files.clone();
+	}
+
+	/**
+	 * Implements {@link TaskCollector#getTasks()}. The returned table is
+	 * read-only.
+	 */
+	public TaskTable getTasks() {
+		TaskTable ret = published;
+		if (ret != null) {
+			return ret;
 		}
-		return ret;
+		return collect();
 	}
 
 	/**
-	 * Implements {@link TaskCollector#getTasks()}.
-	 */
-	public synchronized TaskTable getTasks() {
-		TaskTable ret = new TaskTable();
-		int size = files.size();
-		for (int i = 0; i < size; i++) {
-			File f = (File) files.get(i);
-			TaskTable aux = null;
-			try {
-				aux = CronParser.parse(f);
-			} catch (IOException e) {
-				Exception e1 = new Exception("Cannot parse cron file: "
-						+ f.getAbsolutePath(), e);
-				e1.printStackTrace();
+	 * Checks the files and publishes the resulting table. Called by a
+	 * {@link FileWatcherThread}.
+	 */
+	void publish() {
+		int v = version;
+		TaskTable ret = collect();
+		synchronized (this) {
+			// Not published if the file list has changed meanwhile.
+			if (v == version) {
+				published = ret;
 			}
-			if (aux != null) {
-				int auxSize = aux.size();
-				for (int j = 0; j < auxSize; j++) {
-					ret.add(aux.getSchedulingPattern(j), aux.getTask(j));
+		}
+	}
+
+	/**
+	 * Discards the published table, so that the files are checked again at
+	 * every {@link FileTaskCollector#getTasks()} call.
+	 */
+	synchronized void unpublish() {
+		published = null;
+	}
+
+	/**
+	 * Checks the files, parsing again the changed ones, and returns the
+	 * resulting table.
+	 * 
+	 * @return The read-only table of the tasks in the files.
+	 */
+	private TaskTable collect() {
+		synchronized (collectLock) {
+			int v = version;
+			File[] snapshot = files;
+			boolean changed = (tasks == null || tasksVersion != v);
+			for (int i = 0; i < snapshot.length; i++) {
+				if (refresh(snapshot[i])) {
+					changed = true;
 				}
 			}
+			if (!changed) {
+				return tasks;
+			}
+			// Forgets the removed files.
+			if (cache.size() > snapshot.length) {
+				HashMap aux = new HashMap();
+				for (int i = 0; i < snapshot.length; i++) {
+					Object cached = cache.get(snapshot[i]);
+					if (cached != null) {
+						aux.put(snapshot[i], cached);
+					}
+				}
+				cache = aux;
+			}
+			TaskTable ret = new TaskTable();
+			for (int i = 0; i < snapshot.length; i++) {
+				CachedFile cached = (CachedFile) cache.get(snapshot[i]);
+				if (cached != null && cached.table != null) {
+					TaskTable aux = cached.table;
+					int auxSize = aux.size();
+					for (int j = 0; j < auxSize; j++) {
+						ret.add(aux.getSchedulingPattern(j), aux.getTask(j));
+					}
+				}
+			}
+			ret.setReadOnly();
+			tasks = ret;
+			tasksVersion = v;
+			return ret;
+		}
+	}
+
+	/**
+	 * Parses again a file, if it has changed since the last time.
+	 * 
+	 * @param file
+	 *            The file.
+	 * @return true if the tasks in the file may have changed. A file which
+	 *         still can't be read has not changed.
+	 */
+	private boolean refresh(File file) {
+		CachedFile cached = (CachedFile) cache.get(file);
+		long lastModified = file.lastModified();
+		long length = file.length();
+		if (cached != null && cached.lastModified == lastModified
+				&& cached.length == length && !cached.recent) {
+			return false;
+		}
+		// Could the file change again without changing its timestamp?
+		boolean recent = System.currentTimeMillis() - lastModified
+				< MTIME_RESOLUTION;
+		try {
+			byte[] contents = CronParser.read(file);
+			long checksum = CronParser.checksum(contents);
+			if (cached != null && cached.table != null
+					&& cached.checksum == checksum) {
+				// Touched, but not changed.
+				cached.lastModified = lastModified;
+				cached.length = length;
+				cached.recent = recent;
+				return false;
+			}
+			TaskTable table = CronParser.parse(new ByteArrayInputStream(contents));
+			cache.put(file, new CachedFile(lastModified, length, checksum,
+					recent, table));
+		} catch (IOException e) {
+			Exception e1 = new Exception("Cannot parse cron file: "
+					+ file.getAbsolutePath(), e);
+			e1.printStackTrace();
+			// Remembers the failure, until the file changes.
+			cache.put(file, new CachedFile(lastModified, length, 0, recent,
+					null));
+			return cached != null && cached.table != null;
 		}
-		return ret;
+		return true;
+	}
+
+	/**
+	 * The cached state of a file.
+	 */
+	private static class CachedFile {
+
+		/**
+		 * The last modification time of the file.
+		 */
+		private long lastModified;
+
+		/**
+		 * The size of the file.
+		 */
+		private long length;
+
+		/**
+		 * The CRC-32 checksum of the file contents.
+		 */
+		private long checksum;
+
+		/**
+		 * true if the file has been read within the timestamp resolution of
+		 * its last modification: it has to be checked again even if its
+		 * timestamp doesn't change.
+		 */
+		private boolean recent;
+
+		/**
+		 * The table parsed from the file, or null if the file can't be read.
+		 */
+		private TaskTable table;
+
+		public CachedFile(long lastModified, long length, long checksum,
+				boolean recent, TaskTable table) {
+			this.lastModified = lastModified;
+			this.length = length;
+			this.checksum = checksum;
+			this.recent = recent;
+			this.table = table;
+		}
+
 	}
 
 }
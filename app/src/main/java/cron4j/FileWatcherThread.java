@@ -0,0 +1,106 @@
+/*
+ * cron4j - A pure Java cron-like scheduler
+ *
+ * Copyright (C) 2007-2010 Carlo Pelliccia (www.sauronsoftware.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version
+ * 2.1, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License 2.1 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License version 2.1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package cron4j;
+
+/**
+ * <p>
+ * FileWatcherThreads are used by {@link Scheduler} instances whose file watch
+ * interval is set. A FileWatcherThread checks the scheduled files at regular
+ * intervals, out of the launching path, and publishes the updated task table
+ * in the {@link FileTaskCollector}. Launchers then read the published table
+ * without touching the file system.
+ * </p>
+ * 
+ * @since 2.3
+ */
+class FileWatcherThread extends Thread {
+
+	/**
+	 * A GUID for this object.
+	 */
+	private String guid = GUIDGenerator.generate();
+
+	/**
+	 * The watched collector.
+	 */
+	private FileTaskCollector collector;
+
+	/**
+	 * The interval between two checks, in millis.
+	 */
+	private long interval;
+
+	/**
+	 * The clock of the owner scheduler.
+	 */
+	private Clock clock;
+
+	/**
+	 * Builds the watcher thread.
+	 * 
+	 * @param scheduler
+	 *            The owner scheduler.
+	 * @param collector
+	 *            The watched collector.
+	 * @param interval
+	 *            The interval between two checks, in millis.
+	 */
+	public FileWatcherThread(Scheduler scheduler, FileTaskCollector collector,
+			long interval) {
+		this.collector = collector;
+		this.interval = interval;
+		this.clock = scheduler.getClock();
+		// Thread name.
+		String name = "cron4j::scheduler[" + scheduler.getGuid()
+				+ "]::watcher[" + guid + "]";
+		setName(name);
+	}
+
+	/**
+	 * Returns the GUID for this object.
+	 * 
+	 * @return The GUID for this object.
+	 */
+	public Object getGuid() {
+		return guid;
+	}
+
+	/**
+	 * Overrides {@link Thread#run()}.
+	 */
+	public void run() {
+		try {
+			for (;;) {
+				collector.publish();
+				long deadline = clock.nanoTime() + interval * 1000000;
+				synchronized (this) {
+					long remaining;
+					while ((remaining = deadline - clock.nanoTime()) > 0) {
+						clock.waitFor(this, remaining);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			// Must exit!
+		}
+		// Launchers go back reading the files.
+		collector.unpublish();
+	}
+
+}
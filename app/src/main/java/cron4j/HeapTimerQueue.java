@@ -0,0 +1,94 @@
+/*
+ * cron4j - A pure Java cron-like scheduler
+ *
+ * Copyright (C) 2007-2010 Carlo Pelliccia (www.sauronsoftware.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version
+ * 2.1, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License 2.1 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License version 2.1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package cron4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * <p>
+ * A {@link TimerQueue} implementation based on a binary heap. Adding and
+ * polling a task costs O(log n).
+ * </p>
+ * <p>
+ * Removed tasks are only marked as cancelled, and they are discarded when
+ * they reach the head of the heap. The heap is rebuilt when they become more
+ * than the live ones.
+ * </p>
+ * 
+ * @since 2.3
+ */
+class HeapTimerQueue implements TimerQueue {
+
+	/**
+	 * The heap.
+	 */
+	private PriorityQueue heap = new PriorityQueue();
+
+	/**
+	 * How many cancelled tasks are still sitting in the heap.
+	 */
+	private int cancelled = 0;
+
+	public void add(QueuedTask task) {
+		heap.add(task);
+	}
+
+	public void remove(QueuedTask task) {
+		cancelled++;
+		if (cancelled > heap.size() / 2) {
+			PriorityQueue aux = new PriorityQueue();
+			for (Iterator i = heap.iterator(); i.hasNext();) {
+				QueuedTask t = (QueuedTask) i.next();
+				if (!t.cancelled) {
+					aux.add(t);
+				}
+			}
+			heap = aux;
+			cancelled = 0;
+		}
+	}
+
+	public void clear() {
+		heap.clear();
+		cancelled = 0;
+	}
+
+	public long getWakeTime(long now) {
+		QueuedTask head = (QueuedTask) heap.peek();
+		return head != null ? head.time : Long.MAX_VALUE;
+	}
+
+	public void pollDue(long now, ArrayList due) {
+		while (!heap.isEmpty()) {
+			QueuedTask task = (QueuedTask) heap.peek();
+			if (task.time > now) {
+				break;
+			}
+			heap.poll();
+			if (task.cancelled) {
+				cancelled--;
+			} else {
+				due.add(task);
+			}
+		}
+	}
+
+}
@@ -25,15 +25,20 @@ import java.util.ArrayList;
  * A ValueMatcher whose rules are in a plain array of integer values. When asked
  * to validate a value, this ValueMatcher checks if it is in the array.
  * </p>
+ * <p>
+ * The values are compiled into a 64 bits mask, so the check is a single
+ * shift-and-test. Every field of a scheduling pattern fits in it.
+ * </p>
  * 
  * @author Carlo Pelliccia
  */
 class IntArrayValueMatcher implements ValueMatcher {
 
 	/**
-	 * The accepted values.
+	 * The accepted values, as a bit mask. Values out of the 0-63 range can't
+	 * be matched by any field, and they are not represented.
 	 */
-	private int[] values;
+	private long mask = 0L;
 
 	/**
 	 * Builds the ValueMatcher.
@@ -45,26 +50,42 @@ class IntArrayValueMatcher implements ValueMatcher {
 	 */
 	public IntArrayValueMatcher(ArrayList integers) {
 		int size = integers.size();
-		values = new int[size];
 		for (int i = 0; i < size; i++) {
+			int value;
 			try {
-				values[i] = ((Integer) integers.get(i)).intValue();
+				value = ((Integer) integers.get(i)).intValue();
 			} catch (Exception e) {
 				throw new IllegalArgumentException(e.getMessage());
 			}
+			if (value >= 0 && value < 64) {
+				mask |= 1L << value;
+			}
 		}
 	}
 
+	/**
+	 * Builds the ValueMatcher from a bit mask of the accepted values, as
+	 * returned by {@link IntArrayValueMatcher#getMask()}.
+	 * 
+	 * @param mask
+	 *            The accepted values, as a bit mask.
+	 */
+	IntArrayValueMatcher(long mask) {
+		this.mask = mask;
+	}
+
 	/**
 	 * Returns true if the given value is included in the matcher list.
 	 */
 	public boolean match(int value) {
-		for (int i = 0; i < values.length; i++) {
-			if (values[i] == value) {
-				return true;
-			}
-		}
-		return false;
+		return value >= 0 && value < 64 && ((mask >>> value) & 1L) != 0;
+	}
+
+	/**
+	 * Returns the accepted values as a bit mask.
+	 */
+	public long getMask() {
+		return mask;
 	}
 
 }
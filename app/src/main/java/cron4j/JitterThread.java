@@ -0,0 +1,133 @@
+/*
+ * cron4j - A pure Java cron-like scheduler
+ * 
+ * Copyright (C) 2007-2010 Carlo Pelliccia (www.sauronsoftware.it)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version
+ * 2.1, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License 2.1 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License version 2.1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package cron4j;
+
+import java.util.ArrayList;
+
+/**
+ * <p>
+ * JitterThreads are used by a started {@link Scheduler} to hold back the
+ * launches of the tasks with a jitter offset, see
+ * {@link Task#setJitter(String, long)}. A fired task is kept until its
+ * offset has passed, and then it is handed back to the scheduler for the
+ * actual launch. The thread is started only when the first of these tasks
+ * is fired.
+ * </p>
+ * <p>
+ * Launches still held when the scheduler stops are lost.
+ * </p>
+ * 
+ * @since 2.3
+ */
+class JitterThread extends Thread {
+
+	/**
+	 * A GUID for this object.
+	 */
+	private String guid = GUIDGenerator.generate();
+
+	/**
+	 * The owner scheduler.
+	 */
+	private Scheduler scheduler;
+
+	/**
+	 * The clock of the owner scheduler.
+	 */
+	private Clock clock;
+
+	/**
+	 * The held launches, ordered by launch time.
+	 */
+	private HeapTimerQueue queue = new HeapTimerQueue();
+
+	/**
+	 * Builds the jitter thread.
+	 * 
+	 * @param scheduler
+	 *            The owner scheduler.
+	 */
+	public JitterThread(Scheduler scheduler) {
+		this.scheduler = scheduler;
+		this.clock = scheduler.getClock();
+		// Thread name.
+		String name = "cron4j::scheduler[" + scheduler.getGuid()
+				+ "]::jitter[" + guid + "]";
+		setName(name);
+	}
+
+	/**
+	 * Returns the GUID for this object.
+	 * 
+	 * @return The GUID for this object.
+	 */
+	public Object getGuid() {
+		return guid;
+	}
+
+	/**
+	 * Holds a launch until the given time.
+	 * 
+	 * @param task
+	 *            The task.
+	 * @param time
+	 *            The launch time.
+	 */
+	synchronized void add(Task task, long time) {
+		QueuedTask entry = new QueuedTask(null, task);
+		entry.time = time;
+		queue.add(entry);
+		clock.wakeUp(this);
+	}
+
+	/**
+	 * Overrides {@link Thread#run()}.
+	 */
+	public void run() {
+		ArrayList due = new ArrayList();
+		try {
+			for (;;) {
+				synchronized (this) {
+					// Sleeps until the first launch is due.
+					for (;;) {
+						long now = clock.currentTimeMillis();
+						long wakeTime = queue.getWakeTime(now);
+						if (wakeTime <= now) {
+							queue.pollDue(now, due);
+							break;
+						}
+						clock.waitFor(this, wakeTime == Long.MAX_VALUE
+								? Long.MAX_VALUE : (wakeTime - now) * 1000000);
+					}
+				}
+				// Launches the due tasks.
+				int size = due.size();
+				for (int i = 0; i < size; i++) {
+					scheduler.launchTask(((QueuedTask) due.get(i)).task);
+				}
+				due.clear();
+			}
+		} catch (InterruptedException e) {
+			// Must exit!
+		}
+		// Discard scheduler reference.
+		scheduler = null;
+	}
+
+}
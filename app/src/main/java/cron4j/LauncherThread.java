@@ -18,11 +18,21 @@
  */
 package cron4j;
 
+import java.util.TimeZone;
+
 /**
  * LauncherThreads are used by {@link Scheduler} instances. A LauncherThread
  * retrieves a list of task from a set of {@link TaskCollector}s. Then it
  * launches, within a separate {@link TaskExecutor}, every retrieved task whose
- * scheduling pattern matches the given reference time.
+ * scheduling pattern matches the given reference time. Tasks sharing the same
+ * pattern are grouped, so every distinct pattern is evaluated once, and only
+ * the patterns which can match the current second and minute are evaluated
+ * at all.
+ * <p>
+ * When some seconds have been skipped since the previous launch, the launcher
+ * recovers the launches missed in them, according to the misfire policy of
+ * each task. A whole gap is recovered by a single launcher.
+ * </p>
  * 
  * @author Carlo Pelliccia
  * @since 2.0
@@ -44,6 +54,11 @@ class LauncherThread extends Thread {
 	 */
 	private TaskCollector[] collectors;
 
+	/**
+	 * The reference time of the previous launch.
+	 */
+	private long lastTimeInMillis;
+
 	/**
 	 * A reference time for task launching.
 	 */
@@ -56,13 +71,18 @@ class LauncherThread extends Thread {
 	 *            The owner scheduler.
 	 * @param collectors
 	 *            Task collectors, used to retrieve registered tasks.
+	 * @param lastTimeInMillis
+	 *            The reference time of the previous launch. The launches
+	 *            between this time and the reference time, both excluded, have
+	 *            been missed.
 	 * @param referenceTimeInMillis
 	 *            A reference time for task launching.
 	 */
 	public LauncherThread(Scheduler scheduler, TaskCollector[] collectors,
-			long referenceTimeInMillis) {
+			long lastTimeInMillis, long referenceTimeInMillis) {
 		this.scheduler = scheduler;
 		this.collectors = collectors;
+		this.lastTimeInMillis = lastTimeInMillis;
 		this.referenceTimeInMillis = referenceTimeInMillis;
 		// Thread name.
 		String name = "cron4j::scheduler[" + scheduler.getGuid()
@@ -83,21 +103,122 @@ class LauncherThread extends Thread {
 	 * Overrides {@link Thread#run()}.
 	 */
 	public void run() {
+		// The reference time is decomposed once for every pattern.
+		TimeZone timeZone = scheduler.getTimeZone();
+		TimeFields fields = new TimeFields(timeZone, referenceTimeInMillis);
+		// Have some seconds been skipped?
+		long lastSecond = (lastTimeInMillis / 1000) * 1000;
+		long referenceSecond = (referenceTimeInMillis / 1000) * 1000;
+		boolean misfired = referenceSecond - lastSecond > 1000;
 		outer: for (int i = 0; i < collectors.length; i++) {
 			TaskTable taskTable = collectors[i].getTasks();
-			int size = taskTable.size();
-			for (int j = 0; j < size; j++) {
+			PatternGroups groups = taskTable.getPatternGroups();
+			if (misfired) {
+				// Every pattern may have been matched in the gap.
+				int size = groups.size();
+				for (int j = 0; j < size; j++) {
+					if (isInterrupted()) {
+						break outer;
+					}
+					launchMisfired(taskTable, groups, j, fields, timeZone,
+							lastSecond, referenceSecond);
+				}
+				continue;
+			}
+			int[] candidates = groups.getCandidates(fields);
+			for (int j = 0; j < candidates.length; j++) {
 				if (isInterrupted()) {
 					break outer;
 				}
-				SchedulingPattern pattern = taskTable.getSchedulingPattern(j);
-				if (pattern.match(scheduler.getTimeZone(), referenceTimeInMillis)) {
-					Task task = taskTable.getTask(j);
-					scheduler.spawnExecutor(task);
+				if (groups.match(candidates[j], fields)) {
+					int[] indices = groups.getTaskIndices(candidates[j]);
+					for (int k = 0; k < indices.length; k++) {
+						Task task = taskTable.getTask(indices[k]);
+						scheduler.dispatchTask(task);
+					}
 				}
 			}
 		}
 		// Notifies completed.
 		scheduler.notifyLauncherCompleted(this);
 	}
+
+	/**
+	 * Launches the tasks of a pattern group, recovering the launches missed
+	 * in a gap according to their misfire policy.
+	 * 
+	 * @param taskTable
+	 *            The task table.
+	 * @param groups
+	 *            The tasks of the table grouped by pattern.
+	 * @param group
+	 *            The group index.
+	 * @param fields
+	 *            The reference time, decomposed.
+	 * @param timeZone
+	 *            The scheduler time zone.
+	 * @param lastSecond
+	 *            The last checked second.
+	 * @param referenceSecond
+	 *            The reference second.
+	 */
+	private void launchMisfired(TaskTable taskTable, PatternGroups groups,
+			int group, TimeFields fields, TimeZone timeZone, long lastSecond,
+			long referenceSecond) {
+		SchedulingPattern pattern = groups.getSchedulingPattern(group);
+		boolean matched = groups.match(group, fields);
+		// Missed launches, counted only if needed.
+		int missed = -1;
+		int[] indices = groups.getTaskIndices(group);
+		for (int k = 0; k < indices.length; k++) {
+			Task task = taskTable.getTask(indices[k]);
+			int launches = matched ? 1 : 0;
+			int policy = task.getMisfirePolicy();
+			if (policy == Task.MISFIRE_FIRE_ONCE) {
+				if (launches == 0) {
+					launches = countMisfires(pattern, timeZone, lastSecond,
+							referenceSecond, 1);
+				}
+			} else if (policy == Task.MISFIRE_FIRE_ALL) {
+				if (missed == -1) {
+					missed = countMisfires(pattern, timeZone, lastSecond,
+							referenceSecond, Integer.MAX_VALUE);
+				}
+				launches += missed;
+			}
+			for (int l = 0; l < launches; l++) {
+				scheduler.dispatchTask(task);
+			}
+		}
+	}
+
+	/**
+	 * Counts how many times a pattern is matched between two seconds, both
+	 * excluded.
+	 * 
+	 * @param pattern
+	 *            The pattern.
+	 * @param timeZone
+	 *            The time zone.
+	 * @param from
+	 *            The first second.
+	 * @param to
+	 *            The last second.
+	 * @param max
+	 *            The count stops at this value.
+	 * @return How many times the pattern is matched, up to the given maximum.
+	 */
+	private static int countMisfires(SchedulingPattern pattern,
+			TimeZone timeZone, long from, long to, int max) {
+		int ret = 0;
+		long time = from;
+		while (ret < max) {
+			time = Predictor.nextMatchingTime(pattern, timeZone, time);
+			if (time == -1 || time >= to) {
+				break;
+			}
+			ret++;
+		}
+		return ret;
+	}
 }
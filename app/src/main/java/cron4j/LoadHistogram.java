@@ -0,0 +1,129 @@
+/*
+ * cron4j - A pure Java cron-like scheduler
+ * 
+ * Copyright (C) 2007-2010 Carlo Pelliccia (www.sauronsoftware.it)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version
+ * 2.1, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License 2.1 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License version 2.1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package cron4j;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * Counts the task launches of a {@link Scheduler} in each of the last seconds.
+ * The counters are kept in a ring, one for every second, and a counter is
+ * reset when its second comes round again.
+ * </p>
+ * <p>
+ * Every counter is stored along with its second in a single atomic value, so
+ * that a launch is counted without locking.
+ * </p>
+ * 
+ * @since 2.3
+ */
+class LoadHistogram {
+
+	/**
+	 * The value of a counter never used: its second can't be counted.
+	 */
+	private static final long UNUSED = ((long) Integer.MIN_VALUE) << 32;
+
+	/**
+	 * The counters. The high 32 bits of each one hold the counted second, the
+	 * low 32 bits the launch count.
+	 */
+	private AtomicLongArray counters;
+
+	/**
+	 * Builds the histogram.
+	 * 
+	 * @param size
+	 *            How many seconds are counted.
+	 */
+	public LoadHistogram(int size) {
+		counters = new AtomicLongArray(size);
+		clear();
+	}
+
+	/**
+	 * Resets every counter.
+	 */
+	public void clear() {
+		int size = counters.length();
+		for (int i = 0; i < size; i++) {
+			counters.set(i, UNUSED);
+		}
+	}
+
+	/**
+	 * Counts a launch.
+	 * 
+	 * @param timeInMillis
+	 *            The launch time.
+	 */
+	public void record(long timeInMillis) {
+		long second = timeInMillis / 1000;
+		int index = indexOf(second);
+		long tag = ((long) (int) second) << 32;
+		for (;;) {
+			long value = counters.get(index);
+			long update;
+			if ((value & 0xffffffff00000000L) == tag) {
+				update = value + 1;
+			} else {
+				update = tag | 1;
+			}
+			if (counters.compareAndSet(index, value, update)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the launch counts of the last seconds.
+	 * 
+	 * @param timeInMillis
+	 *            The current time.
+	 * @return The launch counts, oldest first, the last one being the current
+	 *         second.
+	 */
+	public int[] snapshot(long timeInMillis) {
+		int size = counters.length();
+		int[] ret = new int[size];
+		long last = timeInMillis / 1000;
+		for (int i = 0; i < size; i++) {
+			long second = last - size + 1 + i;
+			long value = counters.get(indexOf(second));
+			if ((int) (value >>> 32) == (int) second) {
+				ret[i] = (int) value;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the index of the counter of a second.
+	 * 
+	 * @param second
+	 *            The second.
+	 * @return The index of its counter.
+	 */
+	private int indexOf(long second) {
+		int size = counters.length();
+		int index = (int) (second % size);
+		return index < 0 ? index + size : index;
+	}
+
+}
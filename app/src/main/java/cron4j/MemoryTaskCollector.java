@@ -19,22 +19,36 @@
 package cron4j;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * <p>
  * A {@link TaskCollector} implementation managing a task list in memory.
  * </p>
+ * <p>
+ * Tasks are found by ID through a hash index, so looking them up costs O(1)
+ * regardless of the number of collected tasks.
+ * </p>
+ * <p>
+ * The order of the collected tasks is not preserved: a removed task is
+ * replaced by the last one in the list, so after a removal the tasks returned
+ * by {@link MemoryTaskCollector#getTasks()}, and the IDs returned by
+ * {@link MemoryTaskCollector#getIds()}, are no longer in the order they were
+ * added. Tasks due at the same time can then be launched in a different
+ * order too.
+ * </p>
+ * <p>
+ * The table returned by {@link MemoryTaskCollector#getTasks()} is a read-only
+ * copy, published through a volatile reference. Every change builds and
+ * publishes a new copy while holding the lock, so reading the tasks costs
+ * O(1) and never takes the lock, whereas a change costs O(n).
+ * </p>
  * 
  * @author Carlo Pelliccia
  * @since 2.0
  */
 class MemoryTaskCollector implements TaskCollector {
 
-	/**
-	 * Size.
-	 */
-	private int size = 0;
-
 	/**
 	 * The inner scheduling pattern list.
 	 */
@@ -50,13 +64,38 @@ class MemoryTaskCollector implements TaskCollector {
 	 */
 	private ArrayList ids = new ArrayList();
 
+	/**
+	 * The position of each couple in the lists, as an {@link Integer} mapped by
+	 * ID.
+	 */
+	private HashMap index = new HashMap();
+
+	/**
+	 * The current read-only copy of the collected tasks.
+	 */
+	private volatile TaskTable snapshot = publish();
+
 	/**
 	 * Counts how many task are currently collected by this collector.
 	 * 
 	 * @return The size of the currently collected task list.
 	 */
 	public synchronized int size() {
-		return size;
+		return ids.size();
+	}
+
+	/**
+	 * Returns the IDs of the collected tasks.
+	 * 
+	 * @return The IDs of the collected tasks.
+	 */
+	public synchronized String[] getIds() {
+		int size = ids.size();
+		String[] ret = new String[size];
+		for (int i = 0; i < size; i++) {
+			ret[i] = (String) ids.get(i);
+		}
+		return ret;
 	}
 
 	/**
@@ -70,9 +109,11 @@ class MemoryTaskCollector implements TaskCollector {
 	 */
 	public synchronized String add(SchedulingPattern pattern, Task task) {
 		String id = GUIDGenerator.generate();
+		index.put(id, Integer.valueOf(ids.size()));
 		patterns.add(pattern);
 		tasks.add(task);
 		ids.add(id);
+		snapshot = publish();
 		return id;
 	}
 
@@ -83,9 +124,10 @@ class MemoryTaskCollector implements TaskCollector {
 	 *            The ID of the scheduled couple.
 	 */
 	public synchronized void update(String id, SchedulingPattern pattern) {
-		int index = ids.indexOf(id);
-		if (index > -1) {
-			patterns.set(index, pattern);
+		Integer position = (Integer) index.get(id);
+		if (position != null) {
+			patterns.set(position.intValue(), pattern);
+			snapshot = publish();
 		}
 	}
 
@@ -96,11 +138,22 @@ class MemoryTaskCollector implements TaskCollector {
 	 *            The ID of the scheduled couple.
 	 */
 	public synchronized void remove(String id) throws IndexOutOfBoundsException {
-		int index = ids.indexOf(id);
-		if (index > -1) {
-			tasks.remove(index);
-			patterns.remove(index);
-			ids.remove(index);
+		Integer position = (Integer) index.remove(id);
+		if (position != null) {
+			// Moves the last couple in the freed position.
+			int i = position.intValue();
+			int last = ids.size() - 1;
+			if (i != last) {
+				String lastId = (String) ids.get(last);
+				ids.set(i, lastId);
+				patterns.set(i, patterns.get(last));
+				tasks.set(i, tasks.get(last));
+				index.put(lastId, position);
+			}
+			tasks.remove(last);
+			patterns.remove(last);
+			ids.remove(last);
+			snapshot = publish();
 		}
 	}
 
@@ -113,9 +166,9 @@ class MemoryTaskCollector implements TaskCollector {
 	 *         exist.
 	 */
 	public synchronized Task getTask(String id) {
-		int index = ids.indexOf(id);
-		if (index > -1) {
-			return (Task) tasks.get(index);
+		Integer position = (Integer) index.get(id);
+		if (position != null) {
+			return (Task) tasks.get(position.intValue());
 		} else {
 			return null;
 		}
@@ -130,25 +183,37 @@ class MemoryTaskCollector implements TaskCollector {
 	 *         it doesn't exist.
 	 */
 	public synchronized SchedulingPattern getSchedulingPattern(String id) {
-		int index = ids.indexOf(id);
-		if (index > -1) {
-			return (SchedulingPattern) patterns.get(index);
+		Integer position = (Integer) index.get(id);
+		if (position != null) {
+			return (SchedulingPattern) patterns.get(position.intValue());
 		} else {
 			return null;
 		}
 	}
 
 	/**
-	 * Implements {@link TaskCollector#getTasks()}.
+	 * Implements {@link TaskCollector#getTasks()}. The returned table is
+	 * read-only.
+	 */
+	public TaskTable getTasks() {
+		return snapshot;
+	}
+
+	/**
+	 * Builds a read-only copy of the collected tasks. Called while holding the
+	 * lock.
+	 * 
+	 * @return The copy.
 	 */
-	public synchronized TaskTable getTasks() {
-		TaskTable ret = new TaskTable();
+	private TaskTable publish() {
 		int size = tasks.size();
+		TaskTable ret = new TaskTable(size);
 		for (int i = 0; i < size; i++) {
 			Task t = (Task) tasks.get(i);
 			SchedulingPattern p = (SchedulingPattern) patterns.get(i);
 			ret.add(p, t);
 		}
+		ret.setReadOnly();
 		return ret;
 	}
 
@@ -0,0 +1,198 @@
+/*
+ * cron4j - A pure Java cron-like scheduler
+ * 
+ * Copyright (C) 2007-2010 Carlo Pelliccia (www.sauronsoftware.it)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version
+ * 2.1, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License 2.1 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License version 2.1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package cron4j;
+
+import java.util.TimeZone;
+
+/**
+ * <p>
+ * Enumerates the matching times of many scheduling patterns in a range,
+ * merged in a single ascending sequence.
+ * </p>
+ * <p>
+ * The matching times are retrieved in chunks, filling caller supplied
+ * buffers:
+ * </p>
+ * 
+ * <pre>
+ * MergedPredictor p = new MergedPredictor(patterns, timeZone, from, to);
+ * long[] times = new long[1024];
+ * int[] indices = new int[1024];
+ * int count;
+ * while ((count = p.fill(times, indices)) &gt; 0) {
+ * 	for (int i = 0; i &lt; count; i++) {
+ * 		// patterns[indices[i]] is matched at times[i]
+ * 	}
+ * }
+ * </pre>
+ * <p>
+ * When many patterns are matched at the same time, they are listed in the
+ * order of the supplied array.
+ * </p>
+ * <p>
+ * A MergedPredictor is not synchronized: every thread should use its own
+ * instance.
+ * </p>
+ * 
+ * @see Predictor#fillMatchingTimes(long, long, long[])
+ * @since 2.3
+ */
+public class MergedPredictor {
+
+	/**
+	 * The patterns.
+	 */
+	private SchedulingPattern[] patterns;
+
+	/**
+	 * The time zone for the prediction.
+	 */
+	private TimeZone timeZone;
+
+	/**
+	 * The range end, exclusive.
+	 */
+	private long to;
+
+	/**
+	 * The next matching time of each pattern.
+	 */
+	private long[] next;
+
+	/**
+	 * A binary min-heap of the indices of the patterns still matching in the
+	 * range, ordered by next matching time.
+	 */
+	private int[] heap;
+
+	/**
+	 * The number of elements in the heap.
+	 */
+	private int size = 0;
+
+	/**
+	 * Builds the predictor.
+	 * 
+	 * @param patterns
+	 *            The patterns.
+	 * @param timeZone
+	 *            The time zone for the prediction.
+	 * @param from
+	 *            The range start, inclusive.
+	 * @param to
+	 *            The range end, exclusive.
+	 */
+	public MergedPredictor(SchedulingPattern[] patterns, TimeZone timeZone,
+			long from, long to) {
+		this.patterns = patterns;
+		this.timeZone = timeZone;
+		this.to = to;
+		next = new long[patterns.length];
+		heap = new int[patterns.length];
+		for (int i = 0; i < patterns.length; i++) {
+			long time = Predictor.nextMatchingTime(patterns[i], timeZone,
+					from - 1);
+			if (time != -1 && time < to) {
+				next[i] = time;
+				heap[size] = i;
+				siftUp(size++);
+			}
+		}
+	}
+
+	/**
+	 * Fills the buffers with the next matching times.
+	 * 
+	 * @param times
+	 *            The buffer for the matching times.
+	 * @param indices
+	 *            The buffer for the indices, in the patterns array, of the
+	 *            matched patterns. It must be as long as the times buffer.
+	 * @return How many elements have been stored in the buffers, starting from
+	 *         their first position. 0 means the enumeration is over.
+	 */
+	public int fill(long[] times, int[] indices) {
+		int count = 0;
+		while (count < times.length && size > 0) {
+			int top = heap[0];
+			times[count] = next[top];
+			indices[count] = top;
+			count++;
+			long time = Predictor.nextMatchingTime(patterns[top], timeZone,
+					next[top]);
+			if (time != -1 && time < to) {
+				next[top] = time;
+			} else {
+				// This pattern is over.
+				size--;
+				heap[0] = heap[size];
+			}
+			if (size > 0) {
+				siftDown(0);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Compares two patterns by next matching time, and then by index.
+	 */
+	private boolean before(int a, int b) {
+		return next[a] < next[b] || (next[a] == next[b] && a < b);
+	}
+
+	/**
+	 * Moves up a heap element till its place.
+	 */
+	private void siftUp(int i) {
+		int element = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!before(element, heap[parent])) {
+				break;
+			}
+			heap[i] = heap[parent];
+			i = parent;
+		}
+		heap[i] = element;
+	}
+
+	/**
+	 * Moves down a heap element till its place.
+	 */
+	private void siftDown(int i) {
+		int element = heap[i];
+		for (;;) {
+			int child = (i << 1) + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && before(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!before(heap[child], element)) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = element;
+	}
+
+}
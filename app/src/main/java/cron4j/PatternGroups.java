@@ -0,0 +1,260 @@
+/*
+ * cron4j - A pure Java cron-like scheduler
+ * 
+ * Copyright (C) 2007-2010 Carlo Pelliccia (www.sauronsoftware.it)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version
+ * 2.1, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License 2.1 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License version 2.1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package cron4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * <p>
+ * The tasks of a {@link TaskTable}, grouped by scheduling pattern. Since
+ * tasks sharing the same pattern are launched together, a launcher can
+ * evaluate every distinct pattern once, and then launch the whole group.
+ * </p>
+ * <p>
+ * Patterns are grouped by their normalized string, so identical patterns are
+ * grouped even when they are distinct instances. The first instance found in
+ * the table is evaluated for the whole group.
+ * </p>
+ * <p>
+ * Groups are ordered by the first occurrence of their pattern in the table,
+ * and the tasks of a group keep their order in the table.
+ * </p>
+ * <p>
+ * The groups are also indexed by their seconds and minutes: for each second
+ * and each minute of the hour, the groups whose pattern can match it are
+ * listed. At every tick only the groups listed for the current second or for
+ * the current minute, whichever are less, are candidates for the match, so
+ * patterns firing once a minute or less are rarely touched.
+ * </p>
+ * 
+ * @since 2.3
+ */
+class PatternGroups {
+
+	/**
+	 * The distinct patterns.
+	 */
+	private SchedulingPattern[] patterns;
+
+	/**
+	 * The indices in the table of the tasks of each pattern.
+	 */
+	private int[][] indices;
+
+	/**
+	 * The seconds of each group pattern, merged from all its matcher groups
+	 * into a single bit mask.
+	 */
+	private long[] secondMasks;
+
+	/**
+	 * The minutes of each group pattern, merged from all its matcher groups
+	 * into a single bit mask.
+	 */
+	private long[] minuteMasks;
+
+	/**
+	 * The groups which can match each second, 0 to 59.
+	 */
+	private int[][] secondIndex;
+
+	/**
+	 * The groups which can match each minute, 0 to 59.
+	 */
+	private int[][] minuteIndex;
+
+	/**
+	 * Groups the tasks of a table.
+	 * 
+	 * @param table
+	 *            The table.
+	 */
+	public PatternGroups(TaskTable table) {
+		int size = table.size();
+		HashMap map = new HashMap();
+		ArrayList order = new ArrayList();
+		ArrayList lists = new ArrayList();
+		for (int i = 0; i < size; i++) {
+			SchedulingPattern pattern = table.getSchedulingPattern(i);
+			String key = SchedulingPattern.normalize(pattern.toString());
+			Integer group = (Integer) map.get(key);
+			if (group == null) {
+				group = Integer.valueOf(order.size());
+				map.put(key, group);
+				order.add(pattern);
+				lists.add(new IndexList());
+			}
+			((IndexList) lists.get(group.intValue())).add(i);
+		}
+		int groups = order.size();
+		patterns = new SchedulingPattern[groups];
+		indices = new int[groups][];
+		for (int i = 0; i < groups; i++) {
+			patterns[i] = (SchedulingPattern) order.get(i);
+			indices[i] = ((IndexList) lists.get(i)).toArray();
+		}
+		// Inverted index.
+		secondMasks = new long[groups];
+		minuteMasks = new long[groups];
+		for (int i = 0; i < groups; i++) {
+			SchedulingPattern pattern = patterns[i];
+			for (int k = 0; k < pattern.matcherSize; k++) {
+				secondMasks[i] |= pattern.secondMasks[k];
+				minuteMasks[i] |= pattern.minuteMasks[k];
+			}
+		}
+		secondIndex = buildIndex(secondMasks);
+		minuteIndex = buildIndex(minuteMasks);
+	}
+
+	/**
+	 * Lists, for each value from 0 to 59, the groups whose mask contains it.
+	 * 
+	 * @param masks
+	 *            The mask of each group.
+	 * @return The groups for each value.
+	 */
+	private static int[][] buildIndex(long[] masks) {
+		int[][] ret = new int[60][];
+		for (int value = 0; value < 60; value++) {
+			int count = 0;
+			for (int i = 0; i < masks.length; i++) {
+				if (((masks[i] >>> value) & 1L) != 0) {
+					count++;
+				}
+			}
+			int[] aux = new int[count];
+			count = 0;
+			for (int i = 0; i < masks.length; i++) {
+				if (((masks[i] >>> value) & 1L) != 0) {
+					aux[count++] = i;
+				}
+			}
+			ret[value] = aux;
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the number of distinct patterns.
+	 * 
+	 * @return The number of distinct patterns.
+	 */
+	public int size() {
+		return patterns.length;
+	}
+
+	/**
+	 * Returns the pattern of a group.
+	 * 
+	 * @param group
+	 *            The group index.
+	 * @return The pattern of the group.
+	 */
+	public SchedulingPattern getSchedulingPattern(int group) {
+		return patterns[group];
+	}
+
+	/**
+	 * Returns the indices in the table of the tasks of a group.
+	 * 
+	 * @param group
+	 *            The group index.
+	 * @return The indices of the tasks of the group. The array must not be
+	 *         changed.
+	 */
+	public int[] getTaskIndices(int group) {
+		return indices[group];
+	}
+
+	/**
+	 * Returns the groups which may match the given time: the groups listed in
+	 * the index for its second or for its minute, whichever are less.
+	 * 
+	 * @param fields
+	 *            The time.
+	 * @return The candidate groups, in ascending order. The array must not be
+	 *         changed.
+	 */
+	public int[] getCandidates(TimeFields fields) {
+		int[] bySecond = secondIndex[fields.second];
+		int[] byMinute = minuteIndex[fields.minute];
+		return bySecond.length <= byMinute.length ? bySecond : byMinute;
+	}
+
+	/**
+	 * Checks if the pattern of a group matches the given time.
+	 * 
+	 * @param group
+	 *            The group index.
+	 * @param fields
+	 *            The time.
+	 * @return true if the pattern of the group matches the given time.
+	 */
+	public boolean match(int group, TimeFields fields) {
+		return ((secondMasks[group] >>> fields.second) & 1L) != 0
+				&& ((minuteMasks[group] >>> fields.minute) & 1L) != 0
+				&& patterns[group].match(fields);
+	}
+
+	/**
+	 * A growable list of int values.
+	 */
+	private static class IndexList {
+
+		/**
+		 * The values.
+		 */
+		private int[] values = new int[4];
+
+		/**
+		 * The number of values.
+		 */
+		private int size = 0;
+
+		/**
+		 * Appends a value.
+		 * 
+		 * @param value
+		 *            The value.
+		 */
+		public void add(int value) {
+			if (size == values.length) {
+				int[] aux = new int[size * 2];
+				System.arraycopy(values, 0, aux, 0, size);
+				values = aux;
+			}
+			values[size++] = value;
+		}
+
+		/**
+		 * Returns the values in an array of the exact size.
+		 * 
+		 * @return The values.
+		 */
+		public int[] toArray() {
+			int[] ret = new int[size];
+			System.arraycopy(values, 0, ret, 0, size);
+			return ret;
+		}
+
+	}
+
+}
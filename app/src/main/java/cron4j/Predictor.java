@@ -18,9 +18,7 @@
  */
 package cron4j;
 
-import java.util.Calendar;
 import java.util.Date;
-import java.util.GregorianCalendar;
 import java.util.TimeZone;
 
 /**
@@ -40,12 +38,63 @@ import java.util.TimeZone;
  * 	System.out.println(p.nextMatchingDate());
  * }
  * </pre>
+ * <p>
+ * Predictions have second precision, and they honor every field of the
+ * pattern, seconds included. Each field jumps straight to its next accepted
+ * value, so even patterns matched once in years are predicted quickly.
+ * Predictions can also go backwards, to find when a pattern was last matched.
+ * Local times skipped by a daylight saving time change are never matched,
+ * while local times repeated by it are matched twice.
+ * </p>
  * 
  * @author Carlo Pelliccia
  * @since 1.1
  */
 public class Predictor {
 
+	/**
+	 * How many years ahead a matching time is searched. The Gregorian calendar
+	 * repeats itself every 400 years, so a pattern not matched within them is
+	 * never matched.
+	 */
+	private static final int MAX_LOOKAHEAD_YEARS = 400;
+
+	/**
+	 * Millis in a day.
+	 */
+	private static final long DAY = 24L * 60 * 60 * 1000;
+
+	/**
+	 * Millis in a week.
+	 */
+	private static final long WEEK = 7 * DAY;
+
+	/**
+	 * Mask of the values from 0 to 59.
+	 */
+	private static final long SIXTY = (1L << 60) - 1;
+
+	/**
+	 * Mask of the values from 0 to 23.
+	 */
+	private static final long TWENTY_FOUR = (1L << 24) - 1;
+
+	/**
+	 * Mask of the values from 1 to 12.
+	 */
+	private static final long TWELVE = ((1L << 13) - 1) & ~1L;
+
+	/**
+	 * Mask of the values from 0 to 6.
+	 */
+	private static final long SEVEN = (1L << 7) - 1;
+
+	/**
+	 * The length of the months in a common year.
+	 */
+	private static final int[] MONTH_LENGTHS = { 31, 28, 31, 30, 31, 30, 31,
+			31, 30, 31, 30, 31 };
+
 	/**
 	 * The scheduling pattern on which the predictor works.
 	 */
@@ -73,8 +122,8 @@ public class Predictor {
 	 */
 	public Predictor(String schedulingPattern, long start)
 			throws InvalidPatternException {
-		this.schedulingPattern = new SchedulingPattern(schedulingPattern);
-		this.time = (start / (1000 * 60)) * 1000 * 60;
+		this.schedulingPattern = SchedulingPattern.valueOf(schedulingPattern);
+		this.time = (start / 1000) * 1000;
 	}
 
 	/**
@@ -105,6 +154,23 @@ public class Predictor {
 		this(schedulingPattern, System.currentTimeMillis());
 	}
 
+	/**
+	 * It builds a predictor with the given scheduling pattern and the current
+	 * time of the given clock as the prediction start time.
+	 * 
+	 * @param schedulingPattern
+	 *            The pattern on which the prediction will be based.
+	 * @param clock
+	 *            The clock giving the start time of the prediction.
+	 * @throws InvalidPatternException
+	 *             In the given scheduling pattern isn't valid.
+	 * @since 2.3
+	 */
+	public Predictor(String schedulingPattern, Clock clock)
+			throws InvalidPatternException {
+		this(schedulingPattern, clock.currentTimeMillis());
+	}
+
 	/**
 	 * It builds a predictor with the given scheduling pattern and start time.
 	 * 
@@ -116,7 +182,7 @@ public class Predictor {
 	 */
 	public Predictor(SchedulingPattern schedulingPattern, long start) {
 		this.schedulingPattern = schedulingPattern;
-		this.time = (start / (1000 * 60)) * 1000 * 60;
+		this.time = (start / 1000) * 1000;
 	}
 
 	/**
@@ -144,6 +210,20 @@ public class Predictor {
 		this(schedulingPattern, System.currentTimeMillis());
 	}
 
+	/**
+	 * It builds a predictor with the given scheduling pattern and the current
+	 * time of the given clock as the prediction start time.
+	 * 
+	 * @param schedulingPattern
+	 *            The pattern on which the prediction will be based.
+	 * @param clock
+	 *            The clock giving the start time of the prediction.
+	 * @since 2.3
+	 */
+	public Predictor(SchedulingPattern schedulingPattern, Clock clock) {
+		this(schedulingPattern, clock.currentTimeMillis());
+	}
+
 	/**
 	 * Sets the time zone for predictions.
 	 * 
@@ -158,155 +238,711 @@ public class Predictor {
 	/**
 	 * It returns the next matching moment as a millis value.
 	 * 
-	 * @return The next matching moment as a millis value.
+	 * @return The next matching moment as a millis value, or -1 if the pattern
+	 *         will never be matched.
 	 */
 	public synchronized long nextMatchingTime() {
-		// Go a minute ahead.
-		time += 60000;
-		// Is it matching?
-		if (schedulingPattern.match(time)) {
-			return time;
+		long ret = nextMatchingTime(schedulingPattern, timeZone, time);
+		if (ret != -1) {
+			time = ret;
 		}
-		// Go through the matcher groups.
-		int size = schedulingPattern.matcherSize;
-		long[] times = new long[size];
-		for (int k = 0; k < size; k++) {
-			// Ok, split the time!
-			GregorianCalendar c = new GregorianCalendar();
-			c.setTimeInMillis(time);
-			c.setTimeZone(timeZone);
-			int minute = c.get(Calendar.MINUTE);
-			int hour = c.get(Calendar.HOUR_OF_DAY);
-			int dayOfMonth = c.get(Calendar.DAY_OF_MONTH);
-			int month = c.get(Calendar.MONTH);
-			int year = c.get(Calendar.YEAR);
-			// Gets the matchers.
-			ValueMatcher minuteMatcher = (ValueMatcher) schedulingPattern.minuteMatchers.get(k);
-			ValueMatcher hourMatcher = (ValueMatcher) schedulingPattern.hourMatchers.get(k);
-			ValueMatcher dayOfMonthMatcher = (ValueMatcher) schedulingPattern.dayOfMonthMatchers.get(k);
-			ValueMatcher dayOfWeekMatcher = (ValueMatcher) schedulingPattern.dayOfWeekMatchers.get(k);
-			ValueMatcher monthMatcher = (ValueMatcher) schedulingPattern.monthMatchers.get(k);
-			for (;;) { // day of week
-				for (;;) { // month
-					for (;;) { // day of month
-						for (;;) { // hour
-							for (;;) { // minutes
-								if (minuteMatcher.match(minute)) {
-									break;
-								} else {
-									minute++;
-									if (minute > 59) {
-										minute = 0;
-										hour++;
-									}
-								}
-							}
-							if (hour > 23) {
-								hour = 0;
-								dayOfMonth++;
-							}
-							if (hourMatcher.match(hour)) {
-								break;
-							} else {
-								hour++;
-								minute = 0;
-							}
-						}
-						if (dayOfMonth > 31) {
-							dayOfMonth = 1;
-							month++;
-						}
-						if (month > Calendar.DECEMBER) {
-							month = Calendar.JANUARY;
-							year++;
-						}
-						if (dayOfMonthMatcher instanceof DayOfMonthValueMatcher) {
-							DayOfMonthValueMatcher aux = (DayOfMonthValueMatcher) dayOfMonthMatcher;
-							if (aux.match(dayOfMonth, month + 1, c.isLeapYear(year))) {
-								break;
-							} else {
-								dayOfMonth++;
-								hour = 0;
-								minute = 0;
-							}
-						} else if (dayOfMonthMatcher.match(dayOfMonth)) {
-							break;
-						} else {
-							dayOfMonth++;
-							hour = 0;
-							minute = 0;
-						}
-					}
-					if (monthMatcher.match(month + 1)) {
-						break;
-					} else {
-						month++;
-						dayOfMonth = 1;
-						hour = 0;
-						minute = 0;
-					}
-				}
-				// Is this ok?
-				c = new GregorianCalendar();
-				c.setTimeZone(timeZone);
-				c.set(Calendar.MINUTE, minute);
-				c.set(Calendar.HOUR_OF_DAY, hour);
-				c.set(Calendar.DAY_OF_MONTH, dayOfMonth);
-				c.set(Calendar.MONTH, month);
-				c.set(Calendar.YEAR, year);
-				// Day-of-month/month/year compatibility check.
-				int oldDayOfMonth = dayOfMonth;
-				int oldMonth = month;
-				int oldYear = year;
-				dayOfMonth = c.get(Calendar.DAY_OF_MONTH);
-				month = c.get(Calendar.MONTH);
-				year = c.get(Calendar.YEAR);
-				if (month != oldMonth || dayOfMonth != oldDayOfMonth
-						|| year != oldYear) {
-					// Take another spin!
-					continue;
-				}
-				// Day of week.
-				int dayOfWeek = c.get(Calendar.DAY_OF_WEEK);
-				if (dayOfWeekMatcher.match(dayOfWeek - 1)) {
-					break;
-				} else {
-					dayOfMonth++;
-					hour = 0;
-					minute = 0;
-					if (dayOfMonth > 31) {
-						dayOfMonth = 1;
-						month++;
-						if (month > Calendar.DECEMBER) {
-							month = Calendar.JANUARY;
-							year++;
-						}
-					}
-				}
-			}
-			// Seems it matches!
-			times[k] = (c.getTimeInMillis() / (1000 * 60)) * 1000 * 60;
+		return ret;
+	}
+
+	/**
+	 * It returns the next matching moment as a {@link Date} object.
+	 * 
+	 * @return The next matching moment as a {@link Date} object, or null if
+	 *         the pattern will never be matched.
+	 */
+	public synchronized Date nextMatchingDate() {
+		long ret = nextMatchingTime();
+		return ret != -1 ? new Date(ret) : null;
+	}
+
+	/**
+	 * It returns the previous matching moment as a millis value. The first
+	 * call returns the last matching moment before the start time, and every
+	 * other call moves further back.
+	 * 
+	 * @return The previous matching moment as a millis value, or -1 if the
+	 *         pattern has never been matched.
+	 * @since 2.3
+	 */
+	public synchronized long previousMatchingTime() {
+		long ret = previousMatchingTime(schedulingPattern, timeZone, time);
+		if (ret != -1) {
+			time = ret;
+		}
+		return ret;
+	}
+
+	/**
+	 * It returns the previous matching moment as a {@link Date} object.
+	 * 
+	 * @return The previous matching moment as a {@link Date} object, or null
+	 *         if the pattern has never been matched.
+	 * @see Predictor#previousMatchingTime()
+	 * @since 2.3
+	 */
+	public synchronized Date previousMatchingDate() {
+		long ret = previousMatchingTime();
+		return ret != -1 ? new Date(ret) : null;
+	}
+
+	/**
+	 * <p>
+	 * Fills a buffer with the matching times in the given range, in ascending
+	 * order, as millis values.
+	 * </p>
+	 * <p>
+	 * This method doesn't change the predictor state, and it is not
+	 * synchronized, so it can be called by many threads at the same time.
+	 * </p>
+	 * <p>
+	 * If the buffer gets full, more matching times may follow. They can be
+	 * retrieved calling again the method, with the last returned time plus one
+	 * as the range start.
+	 * </p>
+	 * 
+	 * @param from
+	 *            The range start, inclusive.
+	 * @param to
+	 *            The range end, exclusive.
+	 * @param buffer
+	 *            The buffer to fill.
+	 * @return How many matching times have been stored in the buffer, starting
+	 *         from its first element.
+	 * @since 2.3
+	 */
+	public int fillMatchingTimes(long from, long to, long[] buffer) {
+		SchedulingPattern pattern = schedulingPattern;
+		TimeZone timeZone = this.timeZone;
+		int count = 0;
+		long time = from - 1;
+		while (count < buffer.length) {
+			time = nextMatchingTime(pattern, timeZone, time);
+			if (time == -1 || time >= to) {
+				break;
+			}
+			buffer[count++] = time;
 		}
-		// Which one?
-		long min = Long.MAX_VALUE;
-		for (int k = 0; k < size; k++) {
-			if (times[k] < min) {
-				min = times[k];
+		return count;
+	}
+
+	/**
+	 * <p>
+	 * Fills a buffer with the matching times in the given range, in
+	 * descending order, as millis values.
+	 * </p>
+	 * <p>
+	 * This method doesn't change the predictor state, and it is not
+	 * synchronized, so it can be called by many threads at the same time.
+	 * </p>
+	 * <p>
+	 * If the buffer gets full, more matching times may precede. They can be
+	 * retrieved calling again the method, with the last returned time as the
+	 * range end.
+	 * </p>
+	 * 
+	 * @param from
+	 *            The range start, inclusive.
+	 * @param to
+	 *            The range end, exclusive.
+	 * @param buffer
+	 *            The buffer to fill.
+	 * @return How many matching times have been stored in the buffer, starting
+	 *         from its first element.
+	 * @since 2.3
+	 */
+	public int fillPreviousMatchingTimes(long from, long to, long[] buffer) {
+		SchedulingPattern pattern = schedulingPattern;
+		TimeZone timeZone = this.timeZone;
+		int count = 0;
+		long time = to;
+		while (count < buffer.length) {
+			time = previousMatchingTime(pattern, timeZone, time);
+			if (time == -1 || time < from) {
+				break;
 			}
+			buffer[count++] = time;
 		}
-		// Updates the object current time value.
-		time = min;
-		// Here it is.
-		return time;
+		return count;
 	}
 
 	/**
-	 * It returns the next matching moment as a {@link Date} object.
+	 * Computes the first second, strictly after the given time, matching the
+	 * given pattern.
 	 * 
-	 * @return The next matching moment as a {@link Date} object.
+	 * @param pattern
+	 *            The scheduling pattern.
+	 * @param timeZone
+	 *            The time zone.
+	 * @param after
+	 *            The reference time.
+	 * @return The first matching second, as a UNIX-era millis value, or -1 if
+	 *         the pattern is never matched.
 	 */
-	public synchronized Date nextMatchingDate() {
-		return new Date(nextMatchingTime());
+	static long nextMatchingTime(SchedulingPattern pattern, TimeZone timeZone,
+			long after) {
+		long time = floorDiv(after, 1000) * 1000 + 1000;
+		long limit = time + MAX_LOOKAHEAD_YEARS * 366L * DAY;
+		while (time <= limit) {
+			// The offset is constant till the end of the segment, so local
+			// times and UTC times are in the same order.
+			int offset = timeZone.getOffset(time);
+			long local = nextMatchingLocalTime(pattern, time + offset);
+			if (local == -1) {
+				return -1;
+			}
+			long ret = local - offset;
+			long end = segmentEnd(timeZone, time, ret, offset);
+			if (end > ret) {
+				return ret;
+			}
+			// The offset changes before: search again in the next segment.
+			// Local times in a DST gap are skipped, the ones in a DST overlap
+			// are matched twice, as the scheduler does.
+			time = end;
+		}
+		return -1;
+	}
+
+	/**
+	 * Computes the last second, strictly before the given time, matching the
+	 * given pattern.
+	 * 
+	 * @param pattern
+	 *            The scheduling pattern.
+	 * @param timeZone
+	 *            The time zone.
+	 * @param before
+	 *            The reference time.
+	 * @return The last matching second, as a UNIX-era millis value, or -1 if
+	 *         the pattern is never matched.
+	 */
+	static long previousMatchingTime(SchedulingPattern pattern,
+			TimeZone timeZone, long before) {
+		long time = -floorDiv(-before, 1000) * 1000 - 1000;
+		long limit = time - MAX_LOOKAHEAD_YEARS * 366L * DAY;
+		while (time >= limit) {
+			int offset = timeZone.getOffset(time);
+			long local = previousMatchingLocalTime(pattern, time + offset);
+			if (local == -1) {
+				return -1;
+			}
+			long ret = local - offset;
+			long start = segmentStart(timeZone, ret, time, offset);
+			if (start < ret) {
+				return ret;
+			}
+			// The offset changes after: search again in the previous segment.
+			time = start;
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the last instant before a given time, and not before a given limit,
+	 * whose offset differs from the given one.
+	 * 
+	 * @param timeZone
+	 *            The time zone.
+	 * @param from
+	 *            The limit.
+	 * @param to
+	 *            The start time, whose offset is the given one.
+	 * @param offset
+	 *            The offset at the start time.
+	 * @return The last second with a different offset, or
+	 *         {@link Long#MIN_VALUE} if the offset doesn't change.
+	 */
+	private static long segmentStart(TimeZone timeZone, long from, long to,
+			int offset) {
+		if (!timeZone.useDaylightTime() && timeZone.getOffset(from) == offset) {
+			return Long.MIN_VALUE;
+		}
+		long hi = to;
+		long lo;
+		for (;;) {
+			long probe = Math.max(hi - WEEK, from);
+			if (timeZone.getOffset(probe) != offset) {
+				lo = probe;
+				break;
+			}
+			if (probe == from) {
+				return Long.MIN_VALUE;
+			}
+			hi = probe;
+		}
+		while (hi - lo > 1000) {
+			long mid = lo + ((hi - lo) / 2000) * 1000;
+			if (timeZone.getOffset(mid) != offset) {
+				lo = mid;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Finds the first instant after a given time, and not after a given limit,
+	 * whose offset differs from the given one.
+	 * 
+	 * @param timeZone
+	 *            The time zone.
+	 * @param from
+	 *            The start time, whose offset is the given one.
+	 * @param to
+	 *            The limit.
+	 * @param offset
+	 *            The offset at the start time.
+	 * @return The first second with a different offset, or
+	 *         {@link Long#MAX_VALUE} if the offset doesn't change.
+	 */
+	private static long segmentEnd(TimeZone timeZone, long from, long to,
+			int offset) {
+		if (!timeZone.useDaylightTime() && timeZone.getOffset(to) == offset) {
+			return Long.MAX_VALUE;
+		}
+		// Offset changes are weeks apart: a weekly probe finds the first.
+		long lo = from;
+		long hi;
+		for (;;) {
+			long probe = Math.min(lo + WEEK, to);
+			if (timeZone.getOffset(probe) != offset) {
+				hi = probe;
+				break;
+			}
+			if (probe == to) {
+				return Long.MAX_VALUE;
+			}
+			lo = probe;
+		}
+		// Binary search, at second precision.
+		while (hi - lo > 1000) {
+			long mid = lo + ((hi - lo) / 2000) * 1000;
+			if (timeZone.getOffset(mid) != offset) {
+				hi = mid;
+			} else {
+				lo = mid;
+			}
+		}
+		return hi;
+	}
+
+	/**
+	 * Computes the first local time, not before the given one, matching the
+	 * given pattern. Local times are expressed as millis values as if the
+	 * time zone was UTC.
+	 * 
+	 * @param pattern
+	 *            The scheduling pattern.
+	 * @param local
+	 *            The local start time, at second precision.
+	 * @return The first matching local time, or -1 if the pattern is never
+	 *         matched.
+	 */
+	private static long nextMatchingLocalTime(SchedulingPattern pattern,
+			long local) {
+		long ret = -1;
+		for (int k = 0; k < pattern.matcherSize; k++) {
+			long aux = nextMatchingLocalTime(pattern, k, local);
+			if (aux != -1 && (ret == -1 || aux < ret)) {
+				ret = aux;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Computes the first local time, not before the given one, matching a
+	 * matcher group of the given pattern. Every field jumps straight to its
+	 * next accepted value, carrying over to the next field when there is none.
+	 * 
+	 * @param pattern
+	 *            The scheduling pattern.
+	 * @param k
+	 *            The index of the matcher group.
+	 * @param local
+	 *            The local start time, at second precision.
+	 * @return The first matching local time, or -1 if the matcher group is
+	 *         never matched.
+	 */
+	private static long nextMatchingLocalTime(SchedulingPattern pattern,
+			int k, long local) {
+		long secondMask = pattern.secondMasks[k];
+		long minuteMask = pattern.minuteMasks[k];
+		long hourMask = pattern.hourMasks[k];
+		long[] dayOfMonthMasks = pattern.dayOfMonthMasks[k];
+		long monthMask = pattern.monthMasks[k];
+		long dayOfWeekMask = pattern.dayOfWeekMasks[k];
+		if ((secondMask & SIXTY) == 0 || (minuteMask & SIXTY) == 0
+				|| (hourMask & TWENTY_FOUR) == 0 || (monthMask & TWELVE) == 0
+				|| (dayOfWeekMask & SEVEN) == 0) {
+			return -1;
+		}
+		// Splits the start time.
+		long seconds = floorDiv(local, 1000);
+		long days = floorDiv(seconds, 86400);
+		int secondOfDay = (int) (seconds - days * 86400);
+		int hour = secondOfDay / 3600;
+		int minute = (secondOfDay / 60) % 60;
+		int second = secondOfDay % 60;
+		int[] date = civilFromDays(days);
+		int year = date[0];
+		int month = date[1];
+		int dayOfMonth = date[2];
+		int lastYear = year + MAX_LOOKAHEAD_YEARS;
+		while (year <= lastYear) {
+			// Month.
+			int aux = nextBit(monthMask, month, 13);
+			if (aux == -1) {
+				year++;
+				month = 1;
+				dayOfMonth = 1;
+				hour = minute = second = 0;
+				continue;
+			}
+			if (aux != month) {
+				month = aux;
+				dayOfMonth = 1;
+				hour = minute = second = 0;
+			}
+			// Day, both of month and of week.
+			boolean leap = isLeapYear(year);
+			int length = (leap && month == 2) ? 29 : MONTH_LENGTHS[month - 1];
+			long dayMask = dayOfMonthMasks[((month - 1) << 1) | (leap ? 1 : 0)]
+					& daysOfWeek(dayOfWeekMask,
+							dayOfWeek(daysFromCivil(year, month, 1)), length);
+			aux = nextBit(dayMask, dayOfMonth, length + 1);
+			if (aux == -1) {
+				month++;
+				dayOfMonth = 1;
+				hour = minute = second = 0;
+				continue;
+			}
+			if (aux != dayOfMonth) {
+				dayOfMonth = aux;
+				hour = minute = second = 0;
+			}
+			// Hour.
+			aux = nextBit(hourMask, hour, 24);
+			if (aux == -1) {
+				dayOfMonth++;
+				hour = minute = second = 0;
+				continue;
+			}
+			if (aux != hour) {
+				hour = aux;
+				minute = second = 0;
+			}
+			// Minute.
+			aux = nextBit(minuteMask, minute, 60);
+			if (aux == -1) {
+				hour++;
+				minute = second = 0;
+				continue;
+			}
+			if (aux != minute) {
+				minute = aux;
+				second = 0;
+			}
+			// Second.
+			aux = nextBit(secondMask, second, 60);
+			if (aux == -1) {
+				minute++;
+				second = 0;
+				continue;
+			}
+			second = aux;
+			days = daysFromCivil(year, month, dayOfMonth);
+			return (days * 86400 + hour * 3600 + minute * 60 + second) * 1000;
+		}
+		return -1;
+	}
+
+	/**
+	 * Computes the last local time, not after the given one, matching the
+	 * given pattern. Local times are expressed as millis values as if the
+	 * time zone was UTC.
+	 * 
+	 * @param pattern
+	 *            The scheduling pattern.
+	 * @param local
+	 *            The local start time, at second precision.
+	 * @return The last matching local time, or -1 if the pattern is never
+	 *         matched.
+	 */
+	private static long previousMatchingLocalTime(SchedulingPattern pattern,
+			long local) {
+		long ret = -1;
+		for (int k = 0; k < pattern.matcherSize; k++) {
+			long aux = previousMatchingLocalTime(pattern, k, local);
+			if (aux != -1 && (ret == -1 || aux > ret)) {
+				ret = aux;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Computes the last local time, not after the given one, matching a
+	 * matcher group of the given pattern. Every field jumps straight back to
+	 * its previous accepted value, borrowing from the next field when there is
+	 * none.
+	 * 
+	 * @param pattern
+	 *            The scheduling pattern.
+	 * @param k
+	 *            The index of the matcher group.
+	 * @param local
+	 *            The local start time, at second precision.
+	 * @return The last matching local time, or -1 if the matcher group is
+	 *         never matched.
+	 */
+	private static long previousMatchingLocalTime(SchedulingPattern pattern,
+			int k, long local) {
+		long secondMask = pattern.secondMasks[k];
+		long minuteMask = pattern.minuteMasks[k];
+		long hourMask = pattern.hourMasks[k];
+		long[] dayOfMonthMasks = pattern.dayOfMonthMasks[k];
+		long monthMask = pattern.monthMasks[k];
+		long dayOfWeekMask = pattern.dayOfWeekMasks[k];
+		if ((secondMask & SIXTY) == 0 || (minuteMask & SIXTY) == 0
+				|| (hourMask & TWENTY_FOUR) == 0 || (monthMask & TWELVE) == 0
+				|| (dayOfWeekMask & SEVEN) == 0) {
+			return -1;
+		}
+		// Splits the start time.
+		long seconds = floorDiv(local, 1000);
+		long days = floorDiv(seconds, 86400);
+		int secondOfDay = (int) (seconds - days * 86400);
+		int hour = secondOfDay / 3600;
+		int minute = (secondOfDay / 60) % 60;
+		int second = secondOfDay % 60;
+		int[] date = civilFromDays(days);
+		int year = date[0];
+		int month = date[1];
+		int dayOfMonth = date[2];
+		int firstYear = year - MAX_LOOKAHEAD_YEARS;
+		while (year >= firstYear) {
+			// Month.
+			int aux = previousBit(monthMask, month, 1);
+			if (aux == -1) {
+				year--;
+				month = 12;
+				dayOfMonth = 31;
+				hour = 23;
+				minute = second = 59;
+				continue;
+			}
+			if (aux != month) {
+				month = aux;
+				dayOfMonth = 31;
+				hour = 23;
+				minute = second = 59;
+			}
+			// Day, both of month and of week.
+			boolean leap = isLeapYear(year);
+			int length = (leap && month == 2) ? 29 : MONTH_LENGTHS[month - 1];
+			if (dayOfMonth > length) {
+				dayOfMonth = length;
+			}
+			long dayMask = dayOfMonthMasks[((month - 1) << 1) | (leap ? 1 : 0)]
+					& daysOfWeek(dayOfWeekMask,
+							dayOfWeek(daysFromCivil(year, month, 1)), length);
+			aux = previousBit(dayMask, dayOfMonth, 1);
+			if (aux == -1) {
+				month--;
+				dayOfMonth = 31;
+				hour = 23;
+				minute = second = 59;
+				continue;
+			}
+			if (aux != dayOfMonth) {
+				dayOfMonth = aux;
+				hour = 23;
+				minute = second = 59;
+			}
+			// Hour.
+			aux = previousBit(hourMask, hour, 0);
+			if (aux == -1) {
+				dayOfMonth--;
+				hour = 23;
+				minute = second = 59;
+				continue;
+			}
+			if (aux != hour) {
+				hour = aux;
+				minute = second = 59;
+			}
+			// Minute.
+			aux = previousBit(minuteMask, minute, 0);
+			if (aux == -1) {
+				hour--;
+				minute = second = 59;
+				continue;
+			}
+			if (aux != minute) {
+				minute = aux;
+				second = 59;
+			}
+			// Second.
+			aux = previousBit(secondMask, second, 0);
+			if (aux == -1) {
+				minute--;
+				second = 59;
+				continue;
+			}
+			second = aux;
+			days = daysFromCivil(year, month, dayOfMonth);
+			return (days * 86400 + hour * 3600 + minute * 60 + second) * 1000;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the first value, in the given range, whose bit is set in a mask.
+	 * 
+	 * @param mask
+	 *            The mask.
+	 * @param from
+	 *            The first value, inclusive.
+	 * @param to
+	 *            The last value, exclusive.
+	 * @return The first value whose bit is set, or -1 if none.
+	 */
+	private static int nextBit(long mask, int from, int to) {
+		if (from >= to) {
+			return -1;
+		}
+		long aux = mask & (-1L << from);
+		if (aux == 0) {
+			return -1;
+		}
+		int ret = Long.numberOfTrailingZeros(aux);
+		return ret < to ? ret : -1;
+	}
+
+	/**
+	 * Returns the last value, in the given range, whose bit is set in a mask.
+	 * 
+	 * @param mask
+	 *            The mask.
+	 * @param from
+	 *            The last value, inclusive.
+	 * @param to
+	 *            The first value, inclusive.
+	 * @return The last value whose bit is set, or -1 if none.
+	 */
+	private static int previousBit(long mask, int from, int to) {
+		if (from < to) {
+			return -1;
+		}
+		long aux = mask & (-1L << to);
+		if (from < 63) {
+			aux &= (1L << (from + 1)) - 1;
+		}
+		if (aux == 0) {
+			return -1;
+		}
+		return 63 - Long.numberOfLeadingZeros(aux);
+	}
+
+	/**
+	 * Returns the days of a month falling on the given days of week.
+	 * 
+	 * @param dayOfWeekMask
+	 *            The days of week, as a mask (0 is sunday).
+	 * @param firstDayOfWeek
+	 *            The day of week of the first day of the month.
+	 * @param length
+	 *            The length of the month.
+	 * @return The days of the month, as a mask.
+	 */
+	private static long daysOfWeek(long dayOfWeekMask, int firstDayOfWeek,
+			int length) {
+		long ret = 0;
+		int dayOfWeek = firstDayOfWeek;
+		for (int day = 1; day <= length; day++) {
+			if (((dayOfWeekMask >>> dayOfWeek) & 1L) != 0) {
+				ret |= 1L << day;
+			}
+			dayOfWeek = dayOfWeek == 6 ? 0 : dayOfWeek + 1;
+		}
+		return ret;
+	}
+
+	/**
+	 * Tests whether a year of the Gregorian calendar is a leap year.
+	 */
+	private static boolean isLeapYear(int year) {
+		return (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+	}
+
+	/**
+	 * Returns the day of week of a day since 1970-01-01, 0 being sunday.
+	 */
+	private static int dayOfWeek(long days) {
+		// 1970-01-01 was a thursday.
+		return (int) ((days % 7 + 11) % 7);
+	}
+
+	/**
+	 * Returns the days since 1970-01-01 of a date of the Gregorian calendar.
+	 * 
+	 * @param year
+	 *            The year.
+	 * @param month
+	 *            The month, 1 to 12.
+	 * @param day
+	 *            The day of month.
+	 * @return The days since 1970-01-01.
+	 */
+	private static long daysFromCivil(int year, int month, int day) {
+		long y = month <= 2 ? year - 1 : year;
+		long era = floorDiv(y, 400);
+		long yearOfEra = y - era * 400;
+		long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5
+				+ day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100
+				+ dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * Returns the date of the Gregorian calendar of a day since 1970-01-01.
+	 * 
+	 * @param days
+	 *            The days since 1970-01-01.
+	 * @return The year, the month (1 to 12) and the day of month.
+	 */
+	private static int[] civilFromDays(long days) {
+		long z = days + 719468;
+		long era = floorDiv(z, 146097);
+		long dayOfEra = z - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524
+				- dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra
+				- (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long mp = (5 * dayOfYear + 2) / 153;
+		int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+		int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+		return new int[] { year, month, day };
+	}
+
+	/**
+	 * Integer division rounding towards negative infinity.
+	 */
+	private static long floorDiv(long a, long b) {
+		long ret = a / b;
+		if ((a % b != 0) && ((a < 0) != (b < 0))) {
+			ret--;
+		}
+		return ret;
 	}
 
 }
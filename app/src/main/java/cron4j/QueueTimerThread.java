@@ -0,0 +1,300 @@
+/*
+ * cron4j - A pure Java cron-like scheduler
+ *
+ * Copyright (C) 2007-2010 Carlo Pelliccia (www.sauronsoftware.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version
+ * 2.1, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License 2.1 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License version 2.1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package cron4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * <p>
+ * QueueTimerThreads are used by {@link Scheduler} instances working with the
+ * {@link Scheduler#QUEUE_ENGINE} and {@link Scheduler#WHEEL_ENGINE} engines.
+ * Instead of waking up every second and matching every registered pattern, a
+ * QueueTimerThread keeps the tasks of the scheduler memory collector in a
+ * {@link TimerQueue} ordered by their next fire time, and it sleeps until the
+ * earliest one is due. Only the tasks that have been fired, rescheduled or
+ * descheduled are evaluated again.
+ * </p>
+ * <p>
+ * Tasks coming from files and from custom {@link TaskCollector}s can't be
+ * tracked this way, so, if any of them is registered, the thread still
+ * requests the spawning of a {@link LauncherThread} every second, limited to
+ * those collectors.
+ * </p>
+ * <p>
+ * A queued task is late when it is extracted in a second following its fire
+ * time, in example after a long pause or when the system clock jumps ahead.
+ * The launches it missed are then recovered according to its misfire policy.
+ * </p>
+ *
+ * @since 2.3
+ */
+class QueueTimerThread extends Thread {
+
+	/**
+	 * A GUID for this object.
+	 */
+	private String guid = GUIDGenerator.generate();
+
+	/**
+	 * The owner scheduler.
+	 */
+	private Scheduler scheduler;
+
+	/**
+	 * The clock of the owner scheduler.
+	 */
+	private Clock clock;
+
+	/**
+	 * The queue of the scheduled tasks, ordered by next fire time.
+	 */
+	private TimerQueue queue;
+
+	/**
+	 * The live {@link QueuedTask}s, mapped by task ID.
+	 */
+	private HashMap entries = new HashMap();
+
+	/**
+	 * Builds the timer thread.
+	 *
+	 * @param scheduler
+	 *            The owner scheduler.
+	 * @param queue
+	 *            The queue of the scheduled tasks.
+	 */
+	public QueueTimerThread(Scheduler scheduler, TimerQueue queue) {
+		this.scheduler = scheduler;
+		this.clock = scheduler.getClock();
+		this.queue = queue;
+		// Thread name.
+		String name = "cron4j::scheduler[" + scheduler.getGuid()
+				+ "]::timer[" + guid + "]";
+		setName(name);
+	}
+
+	/**
+	 * Returns the GUID for this object.
+	 *
+	 * @return The GUID for this object.
+	 */
+	public Object getGuid() {
+		return guid;
+	}
+
+	/**
+	 * Adds a task to the queue, replacing any previous entry with the same ID.
+	 *
+	 * @param id
+	 *            The task ID.
+	 * @param pattern
+	 *            The scheduling pattern.
+	 * @param task
+	 *            The task.
+	 */
+	synchronized void add(String id, SchedulingPattern pattern, Task task) {
+		cancel((QueuedTask) entries.remove(id));
+		QueuedTask entry = new QueuedTask(pattern, task);
+		entries.put(id, entry);
+		enqueue(entry, clock.currentTimeMillis());
+		clock.wakeUp(this);
+	}
+
+	/**
+	 * Changes the scheduling pattern of a queued task.
+	 *
+	 * @param id
+	 *            The task ID.
+	 * @param pattern
+	 *            The new scheduling pattern.
+	 */
+	synchronized void update(String id, SchedulingPattern pattern) {
+		QueuedTask entry = (QueuedTask) entries.get(id);
+		if (entry != null) {
+			add(id, pattern, entry.task);
+		}
+	}
+
+	/**
+	 * Removes a task from the queue.
+	 *
+	 * @param id
+	 *            The task ID.
+	 */
+	synchronized void remove(String id) {
+		cancel((QueuedTask) entries.remove(id));
+	}
+
+	/**
+	 * Computes again the fire time of every queued task. Called when the
+	 * scheduler time zone changes.
+	 */
+	synchronized void reset() {
+		queue.clear();
+		long now = clock.currentTimeMillis();
+		for (Iterator i = entries.values().iterator(); i.hasNext();) {
+			enqueue((QueuedTask) i.next(), now);
+		}
+		clock.wakeUp(this);
+	}
+
+	/**
+	 * Wakes up the thread, so that it can check again its sleeping time. Called
+	 * when files or custom collectors are registered in the scheduler.
+	 */
+	synchronized void wakeUp() {
+		clock.wakeUp(this);
+	}
+
+	/**
+	 * Overrides {@link Thread#run()}.
+	 */
+	public void run() {
+		ArrayList due = new ArrayList();
+		long nextPoll = ((clock.currentTimeMillis() / 1000) + 1) * 1000;
+		long lastPoll = nextPoll - 1000;
+		try {
+			for (;;) {
+				long now;
+				boolean poll;
+				synchronized (this) {
+					// Sleeps until the first entry or the next poll is due.
+					for (;;) {
+						now = clock.currentTimeMillis();
+						poll = scheduler.hasPolledCollectors();
+						long wakeTime = queue.getWakeTime(now);
+						if (poll && nextPoll < wakeTime) {
+							wakeTime = nextPoll;
+						}
+						if (wakeTime <= now) {
+							break;
+						}
+						clock.waitFor(this, wakeTime == Long.MAX_VALUE ? Long.MAX_VALUE
+								: (wakeTime - now) * 1000000);
+					}
+					// Extracts the due tasks and queues them again.
+					queue.pollDue(now, due);
+					int size = due.size();
+					int launched = 0;
+					for (int i = 0; i < size; i++) {
+						QueuedTask entry = (QueuedTask) due.get(i);
+						if (requeue(entry, now)) {
+							due.set(launched++, entry);
+						}
+					}
+					while (due.size() > launched) {
+						due.remove(due.size() - 1);
+					}
+				}
+				// Polls the collectors which can't be queued.
+				if (poll && now >= nextPoll) {
+					long second = (now / 1000) * 1000;
+					if (second <= lastPoll) {
+						// The clock went back: no gap to recover.
+						lastPoll = second - 1000;
+					}
+					scheduler.spawnLauncher(lastPoll, now, false);
+					lastPoll = second;
+					nextPoll = second + 1000;
+				} else if (!poll) {
+					// Nothing polled, so nothing missed.
+					lastPoll = (now / 1000) * 1000;
+				}
+				// Launches the due tasks.
+				int size = due.size();
+				for (int i = 0; i < size; i++) {
+					scheduler.dispatchTask(((QueuedTask) due.get(i)).task);
+				}
+				due.clear();
+			}
+		} catch (InterruptedException e) {
+			// Must exit!
+		}
+		// Discard scheduler reference.
+		scheduler = null;
+	}
+
+	/**
+	 * Computes the next fire time of a task and puts it in the queue. Tasks
+	 * whose pattern will never be matched are not queued.
+	 *
+	 * @param entry
+	 *            The task.
+	 * @param after
+	 *            The task will be fired after this time.
+	 */
+	private void enqueue(QueuedTask entry, long after) {
+		long time = Predictor.nextMatchingTime(entry.pattern,
+				scheduler.getTimeZone(), after);
+		entry.time = time;
+		if (time != -1) {
+			queue.add(entry);
+		}
+	}
+
+	/**
+	 * Queues again a due task, applying its misfire policy if it is late.
+	 * 
+	 * @param entry
+	 *            The due task.
+	 * @param now
+	 *            The current time.
+	 * @return true if the task has to be launched; false if the launch has
+	 *         been skipped.
+	 */
+	private boolean requeue(QueuedTask entry, long now) {
+		long second = (now / 1000) * 1000;
+		if (entry.time >= second) {
+			// On time.
+			enqueue(entry, now);
+			return true;
+		}
+		switch (entry.task.getMisfirePolicy()) {
+		case Task.MISFIRE_FIRE_ALL:
+			// The following missed launches are due immediately.
+			enqueue(entry, entry.time);
+			return true;
+		case Task.MISFIRE_SKIP:
+			// The current second can still be matched.
+			enqueue(entry, second - 1);
+			return false;
+		default:
+			enqueue(entry, now);
+			return true;
+		}
+	}
+
+	/**
+	 * Marks a task as cancelled and removes it from the queue.
+	 *
+	 * @param entry
+	 *            The task, or null.
+	 */
+	private void cancel(QueuedTask entry) {
+		if (entry != null) {
+			entry.cancelled = true;
+			if (entry.time != -1) {
+				queue.remove(entry);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,72 @@
+/*
+ * cron4j - A pure Java cron-like scheduler
+ *
+ * Copyright (C) 2007-2010 Carlo Pelliccia (www.sauronsoftware.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version
+ * 2.1, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License 2.1 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License version 2.1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package cron4j;
+
+/**
+ * <p>
+ * A task stored in a {@link TimerQueue}, with its scheduling pattern and its
+ * next fire time.
+ * </p>
+ * 
+ * @since 2.3
+ */
+class QueuedTask implements Comparable {
+
+	/**
+	 * The scheduling pattern.
+	 */
+	SchedulingPattern pattern;
+
+	/**
+	 * The task.
+	 */
+	Task task;
+
+	/**
+	 * The next fire time, -1 if the task is not queued.
+	 */
+	long time = -1;
+
+	/**
+	 * Has this task been rescheduled or descheduled?
+	 */
+	boolean cancelled = false;
+
+	/**
+	 * Builds the queued task.
+	 * 
+	 * @param pattern
+	 *            The scheduling pattern.
+	 * @param task
+	 *            The task.
+	 */
+	public QueuedTask(SchedulingPattern pattern, Task task) {
+		this.pattern = pattern;
+		this.task = task;
+	}
+
+	/**
+	 * Orders the tasks by fire time.
+	 */
+	public int compareTo(Object o) {
+		long other = ((QueuedTask) o).time;
+		return time < other ? -1 : (time == other ? 0 : 1);
+	}
+
+}
@@ -21,6 +21,11 @@ package cron4j;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>
@@ -31,6 +36,58 @@ import java.util.TimeZone;
  */
 public class Scheduler {
 
+	/**
+	 * The default engine. The scheduler wakes up every second and matches
+	 * every registered scheduling pattern against the current time.
+	 * 
+	 * @since 2.3
+	 */
+	public static final int POLLING_ENGINE = 0;
+
+	/**
+	 * An engine keeping the tasks scheduled in memory in a priority queue,
+	 * ordered by their next fire time. The scheduler sleeps until the earliest
+	 * task is due, so its cost depends on how many tasks are fired, not on how
+	 * many tasks are registered. Files and custom collectors, if any, are still
+	 * queried every second.
+	 * 
+	 * @since 2.3
+	 */
+	public static final int QUEUE_ENGINE = 1;
+
+	/**
+	 * An engine working like {@link Scheduler#QUEUE_ENGINE}, but keeping the
+	 * tasks in a hierarchical timing wheel instead of a priority queue. Adding
+	 * and firing a task costs O(1) instead of O(log n), which pays off with
+	 * hundreds of thousands of scheduled tasks.
+	 * 
+	 * @since 2.3
+	 */
+	public static final int WHEEL_ENGINE = 2;
+
+	/**
+	 * Overflow policy of the dispatch queue: a launch waits for room in the
+	 * queue. This is the default policy.
+	 * 
+	 * @since 2.3
+	 */
+	public static final int OVERFLOW_BLOCK = 0;
+
+	/**
+	 * Overflow policy of the dispatch queue: the oldest queued launch with the
+	 * lowest priority is discarded to make room for the new one.
+	 * 
+	 * @since 2.3
+	 */
+	public static final int OVERFLOW_DROP_OLDEST = 1;
+
+	/**
+	 * Overflow policy of the dispatch queue: the new launch is discarded.
+	 * 
+	 * @since 2.3
+	 */
+	public static final int OVERFLOW_REJECT = 2;
+
 	/**
 	 * A GUID for this scheduler.
 	 */
@@ -47,6 +104,99 @@ public class Scheduler {
 	 */
 	private boolean daemon = false;
 
+	/**
+	 * The engine used by the scheduler, one of {@link Scheduler#POLLING_ENGINE},
+	 * {@link Scheduler#QUEUE_ENGINE} and {@link Scheduler#WHEEL_ENGINE}.
+	 */
+	private int engine = POLLING_ENGINE;
+
+	/**
+	 * The executor service supplied by the user, or null.
+	 */
+	private ExecutorService executorService = null;
+
+	/**
+	 * The factory of the threads spawned to run the tasks, or null.
+	 */
+	private ThreadFactory threadFactory = null;
+
+	/**
+	 * The default size of the thread pool created by the scheduler.
+	 */
+	private static final int DEFAULT_THREAD_POOL_SIZE = 16;
+
+	/**
+	 * The size of the thread pool created by the scheduler when it starts, or
+	 * 0 to run each task in a brand new thread.
+	 */
+	private int threadPoolSize = DEFAULT_THREAD_POOL_SIZE;
+
+	/**
+	 * The executor service running the tasks while the scheduler is started,
+	 * or null if each task runs in a brand new thread.
+	 */
+	private ExecutorService pool = null;
+
+	/**
+	 * The interval between two checks of the scheduled files by a
+	 * {@link FileWatcherThread}, or 0 to check them at every launch.
+	 */
+	private long fileWatchInterval = 0;
+
+	/**
+	 * The thread watching the scheduled files, or null.
+	 */
+	private FileWatcherThread watcher = null;
+
+	/**
+	 * The source of time of the scheduler.
+	 */
+	private Clock clock = SystemClock.INSTANCE;
+
+	/**
+	 * The capacity of the dispatch queue, or 0 if the queue is disabled.
+	 */
+	private int dispatchQueueCapacity = 0;
+
+	/**
+	 * The number of worker threads of the dispatch queue, or 0 for the number
+	 * of available processors.
+	 */
+	private int dispatchParallelism = 0;
+
+	/**
+	 * The overflow policy of the dispatch queue.
+	 */
+	private int dispatchOverflowPolicy = OVERFLOW_BLOCK;
+
+	/**
+	 * The dispatch queue while the scheduler is started, or null.
+	 */
+	private DispatchQueue dispatchQueue = null;
+
+	/**
+	 * The thread holding the launches of the tasks with a jitter offset. It is
+	 * started by the first launch which needs it, and it lives until the
+	 * scheduler stops.
+	 */
+	private volatile JitterThread jitterThread = null;
+
+	/**
+	 * true if a jitter thread can be started, that is while the scheduler is
+	 * started. Guarded by {@link Scheduler#jitterLock}.
+	 */
+	private boolean jitterEnabled = false;
+
+	/**
+	 * A lock object for the lazy start of the jitter thread.
+	 */
+	private Object jitterLock = new Object();
+
+	/**
+	 * The launch counts of the last hour.
+	 */
+	private LoadHistogram loadHistogram = new LoadHistogram(3600);
+
 	/**
 	 * The state flag. If true the scheduler is started and running, otherwise
 	 * it is paused and no task is launched.
@@ -77,11 +227,36 @@ public class Scheduler {
 	 */
 	private ArrayList listeners = new ArrayList();
 
+	/**
+	 * Registered {@link TaskRejectionListener}s list.
+	 */
+	private ArrayList rejectionListeners = new ArrayList();
+
 	/**
 	 * The thread checking the clock and requesting the spawning of launcher
 	 * threads.
 	 */
-	private TimerThread timer = null;
+	private Thread timer = null;
+
+	/**
+	 * The timer thread, when the scheduler works with the
+	 * {@link Scheduler#QUEUE_ENGINE} or the {@link Scheduler#WHEEL_ENGINE}
+	 * engine. Access is synchronized on the
+	 * {@link Scheduler#memoryTaskCollector}, so that the queue never misses a
+	 * change in the collector.
+	 */
+	private QueueTimerThread queueTimer = null;
+
+	/**
+	 * The lateness of the last timer tick, in nanoseconds.
+	 */
+	private volatile long lastTickLateness = 0;
+
+	/**
+	 * The greatest lateness of a timer tick since the scheduler has been
+	 * started, in nanoseconds.
+	 */
+	private volatile long maxTickLateness = 0;
 
 	/**
 	 * Currently running {@link LauncherThread} instances.
@@ -144,6 +319,11 @@ public class Scheduler {
 	 */
 	public void setTimeZone(TimeZone timezone) {
 		this.timezone = timezone;
+		synchronized (memoryTaskCollector) {
+			if (queueTimer != null) {
+				queueTimer.reset();
+			}
+		}
 	}
 
 	/**
@@ -185,6 +365,377 @@ public class Scheduler {
 		}
 	}
 
+	/**
+	 * Returns the engine used by this scheduler.
+	 * 
+	 * @return One of {@link Scheduler#POLLING_ENGINE},
+	 *         {@link Scheduler#QUEUE_ENGINE} and
+	 *         {@link Scheduler#WHEEL_ENGINE}.
+	 * @since 2.3
+	 */
+	public int getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Sets the engine used by this scheduler. The default one is
+	 * {@link Scheduler#POLLING_ENGINE}.
+	 * 
+	 * This method must be called before the scheduler is started.
+	 * 
+	 * @param engine
+	 *            One of {@link Scheduler#POLLING_ENGINE},
+	 *            {@link Scheduler#QUEUE_ENGINE} and
+	 *            {@link Scheduler#WHEEL_ENGINE}.
+	 * @throws IllegalArgumentException
+	 *             If the supplied value is not a known engine.
+	 * @throws IllegalStateException
+	 *             If the scheduler is started.
+	 * @since 2.3
+	 */
+	public void setEngine(int engine) throws IllegalArgumentException,
+			IllegalStateException {
+		if (engine != POLLING_ENGINE && engine != QUEUE_ENGINE
+				&& engine != WHEEL_ENGINE) {
+			throw new IllegalArgumentException("Unknown engine: " + engine);
+		}
+		synchronized (lock) {
+			if (started) {
+				throw new IllegalStateException("Scheduler already started");
+			}
+			this.engine = engine;
+		}
+	}
+
+	/**
+	 * Returns the executor service supplied with
+	 * {@link Scheduler#setExecutorService(ExecutorService)}.
+	 * 
+	 * @return The executor service, or null if none has been supplied.
+	 * @since 2.3
+	 */
+	public ExecutorService getExecutorService() {
+		return executorService;
+	}
+
+	/**
+	 * <p>
+	 * Sets an executor service running the launched tasks, instead of a brand
+	 * new thread for every execution. Under bursty schedules this avoids
+	 * thread creation storms. The scheduler doesn't shut the executor service
+	 * down when it stops.
+	 * </p>
+	 * <p>
+	 * Tasks waiting for a thread of the executor service are already listed by
+	 * {@link Scheduler#getExecutingTasks()}, and they can be stopped, paused
+	 * and joined as the running ones.
+	 * </p>
+	 * <p>
+	 * This method must be called before the scheduler is started.
+	 * </p>
+	 * 
+	 * @param executorService
+	 *            The executor service, or null to restore the default
+	 *            behavior.
+	 * @throws IllegalStateException
+	 *             If the scheduler is started.
+	 * @since 2.3
+	 */
+	public void setExecutorService(ExecutorService executorService)
+			throws IllegalStateException {
+		synchronized (lock) {
+			if (started) {
+				throw new IllegalStateException("Scheduler already started");
+			}
+			this.executorService = executorService;
+		}
+	}
+
+	/**
+	 * Returns the thread factory supplied with
+	 * {@link Scheduler#setThreadFactory(ThreadFactory)}.
+	 * 
+	 * @return The thread factory, or null if none has been supplied.
+	 * @since 2.3
+	 */
+	public ThreadFactory getThreadFactory() {
+		return threadFactory;
+	}
+
+	/**
+	 * <p>
+	 * Sets the factory of the threads running the launched tasks, and of the
+	 * threads of the pool sized with {@link Scheduler#setThreadPoolSize(int)}.
+	 * Threads built by the factory keep their own daemon flag.
+	 * </p>
+	 * <p>
+	 * On a JVM supporting virtual threads, a virtual thread factory, with a
+	 * thread pool size of 0, lets the scheduler run a great number of blocking
+	 * tasks at once, without a platform thread stack for each of them. Pausing and stopping an executor
+	 * never pins the carrier thread.
+	 * </p>
+	 * <p>
+	 * This method must be called before the scheduler is started.
+	 * </p>
+	 * 
+	 * @param threadFactory
+	 *            The thread factory, or null to restore the default behavior.
+	 * @throws IllegalStateException
+	 *             If the scheduler is started.
+	 * @since 2.3
+	 */
+	public void setThreadFactory(ThreadFactory threadFactory)
+			throws IllegalStateException {
+		synchronized (lock) {
+			if (started) {
+				throw new IllegalStateException("Scheduler already started");
+			}
+			this.threadFactory = threadFactory;
+		}
+	}
+
+	/**
+	 * Returns the size of the thread pool created by the scheduler.
+	 * 
+	 * @return The size of the thread pool, or 0 if each task runs in a brand
+	 *         new thread.
+	 * @since 2.3
+	 */
+	public int getThreadPoolSize() {
+		return threadPoolSize;
+	}
+
+	/**
+	 * <p>
+	 * Sets the size of a thread pool created by the scheduler when it starts,
+	 * and shut down when it stops. The launched tasks run in the threads of
+	 * the pool, and no more than the given number of tasks runs at once: the
+	 * others wait for a free thread. The pool is not used if an executor
+	 * service has been supplied with
+	 * {@link Scheduler#setExecutorService(ExecutorService)}.
+	 * </p>
+	 * <p>
+	 * By default the pool has 16 threads, so that a burst of launches doesn't
+	 * start a thread for each of them. Idle threads are discarded after a
+	 * minute.
+	 * </p>
+	 * <p>
+	 * This method must be called before the scheduler is started.
+	 * </p>
+	 * 
+	 * @param threadPoolSize
+	 *            The size of the thread pool, or 0 to run each task in a brand
+	 *            new thread.
+	 * @throws IllegalArgumentException
+	 *             If the size is negative.
+	 * @throws IllegalStateException
+	 *             If the scheduler is started.
+	 * @since 2.3
+	 */
+	public void setThreadPoolSize(int threadPoolSize)
+			throws IllegalArgumentException, IllegalStateException {
+		if (threadPoolSize < 0) {
+			throw new IllegalArgumentException("Negative thread pool size: "
+					+ threadPoolSize);
+		}
+		synchronized (lock) {
+			if (started) {
+				throw new IllegalStateException("Scheduler already started");
+			}
+			this.threadPoolSize = threadPoolSize;
+		}
+	}
+
+	/**
+	 * Returns the clock the scheduler reads the time from.
+	 * 
+	 * @return The clock.
+	 * @since 2.3
+	 */
+	public Clock getClock() {
+		return clock;
+	}
+
+	/**
+	 * <p>
+	 * Sets the clock the scheduler reads the time from, and waits against. The
+	 * system clock is used by default. A {@link VirtualClock} lets the
+	 * scheduler run through simulated time.
+	 * </p>
+	 * <p>
+	 * This method must be called before the scheduler is started.
+	 * </p>
+	 * 
+	 * @param clock
+	 *            The clock, or null to restore the system clock.
+	 * @throws IllegalStateException
+	 *             If the scheduler is started.
+	 * @since 2.3
+	 */
+	public void setClock(Clock clock) throws IllegalStateException {
+		synchronized (lock) {
+			if (started) {
+				throw new IllegalStateException("Scheduler already started");
+			}
+			this.clock = clock != null ? clock : SystemClock.INSTANCE;
+		}
+	}
+
+	/**
+	 * Returns the capacity of the dispatch queue.
+	 * 
+	 * @return The capacity of the dispatch queue, or 0 if the queue is
+	 *         disabled.
+	 * @since 2.3
+	 */
+	public int getDispatchQueueCapacity() {
+		return dispatchQueueCapacity;
+	}
+
+	/**
+	 * <p>
+	 * Enables a bounded dispatch queue between the launch of the tasks and
+	 * their execution. Due tasks are queued, and a fixed number of worker
+	 * threads, set with {@link Scheduler#setDispatchParallelism(int)}, take
+	 * and run them by priority, see {@link Task#setPriority(int)}. A burst of
+	 * due tasks is so spread over time, instead of starting them all at once.
+	 * When the queue is full, new launches are handled according to the
+	 * policy set with {@link Scheduler#setDispatchOverflowPolicy(int)}.
+	 * </p>
+	 * <p>
+	 * While the dispatch queue is enabled, tasks run in its worker threads,
+	 * and the thread pool and the executor service of the scheduler are not
+	 * used. Queued tasks are already listed by
+	 * {@link Scheduler#getExecutingTasks()}.
+	 * </p>
+	 * <p>
+	 * This method must be called before the scheduler is started.
+	 * </p>
+	 * 
+	 * @param dispatchQueueCapacity
+	 *            The maximum number of queued launches, or 0 to disable the
+	 *            queue. The queue is disabled by default.
+	 * @throws IllegalArgumentException
+	 *             If the capacity is negative.
+	 * @throws IllegalStateException
+	 *             If the scheduler is started.
+	 * @since 2.3
+	 */
+	public void setDispatchQueueCapacity(int dispatchQueueCapacity)
+			throws IllegalArgumentException, IllegalStateException {
+		if (dispatchQueueCapacity < 0) {
+			throw new IllegalArgumentException("Negative queue capacity: "
+					+ dispatchQueueCapacity);
+		}
+		synchronized (lock) {
+			if (started) {
+				throw new IllegalStateException("Scheduler already started");
+			}
+			this.dispatchQueueCapacity = dispatchQueueCapacity;
+		}
+	}
+
+	/**
+	 * Returns the number of worker threads of the dispatch queue.
+	 * 
+	 * @return The number of worker threads, or 0 for the number of available
+	 *         processors.
+	 * @since 2.3
+	 */
+	public int getDispatchParallelism() {
+		return dispatchParallelism;
+	}
+
+	/**
+	 * Sets the number of worker threads of the dispatch queue, that is how
+	 * many queued tasks can run at the same time. This method must be called
+	 * before the scheduler is started.
+	 * 
+	 * @param dispatchParallelism
+	 *            The number of worker threads, or 0 for the number of
+	 *            available processors, which is the default.
+	 * @throws IllegalArgumentException
+	 *             If the number is negative.
+	 * @throws IllegalStateException
+	 *             If the scheduler is started.
+	 * @see Scheduler#setDispatchQueueCapacity(int)
+	 * @since 2.3
+	 */
+	public void setDispatchParallelism(int dispatchParallelism)
+			throws IllegalArgumentException, IllegalStateException {
+		if (dispatchParallelism < 0) {
+			throw new IllegalArgumentException("Negative parallelism: "
+					+ dispatchParallelism);
+		}
+		synchronized (lock) {
+			if (started) {
+				throw new IllegalStateException("Scheduler already started");
+			}
+			this.dispatchParallelism = dispatchParallelism;
+		}
+	}
+
+	/**
+	 * Returns the overflow policy of the dispatch queue.
+	 * 
+	 * @return One of {@link Scheduler#OVERFLOW_BLOCK},
+	 *         {@link Scheduler#OVERFLOW_DROP_OLDEST} and
+	 *         {@link Scheduler#OVERFLOW_REJECT}.
+	 * @since 2.3
+	 */
+	public int getDispatchOverflowPolicy() {
+		return dispatchOverflowPolicy;
+	}
+
+	/**
+	 * <p>
+	 * Sets what happens to a launch when the dispatch queue is full:
+	 * </p>
+	 * <ul>
+	 * <li>{@link Scheduler#OVERFLOW_BLOCK} - the launch waits for room in the
+	 * queue. A thread calling {@link Scheduler#launch(Task)} is blocked until
+	 * then, while the launches fired by the scheduling patterns wait in a
+	 * backlog, so that the scheduler threads are never blocked. The backlog
+	 * holds as many launches as the queue: when it is full too, the new
+	 * launch fired by a pattern is discarded. This is the default.</li>
+	 * <li>{@link Scheduler#OVERFLOW_DROP_OLDEST} - the oldest queued launch
+	 * with the lowest priority is discarded, unless its priority is higher
+	 * than the priority of the new launch, which is then discarded.</li>
+	 * <li>{@link Scheduler#OVERFLOW_REJECT} - the new launch is discarded.</li>
+	 * </ul>
+	 * <p>
+	 * Discarded launches are notified to the registered
+	 * {@link TaskRejectionListener}s. This method must be called before the
+	 * scheduler is started.
+	 * </p>
+	 * 
+	 * @param dispatchOverflowPolicy
+	 *            One of {@link Scheduler#OVERFLOW_BLOCK},
+	 *            {@link Scheduler#OVERFLOW_DROP_OLDEST} and
+	 *            {@link Scheduler#OVERFLOW_REJECT}.
+	 * @throws IllegalArgumentException
+	 *             If the policy is not valid.
+	 * @throws IllegalStateException
+	 *             If the scheduler is started.
+	 * @see Scheduler#setDispatchQueueCapacity(int)
+	 * @since 2.3
+	 */
+	public void setDispatchOverflowPolicy(int dispatchOverflowPolicy)
+			throws IllegalArgumentException, IllegalStateException {
+		if (dispatchOverflowPolicy != OVERFLOW_BLOCK
+				&& dispatchOverflowPolicy != OVERFLOW_DROP_OLDEST
+				&& dispatchOverflowPolicy != OVERFLOW_REJECT) {
+			throw new IllegalArgumentException("Invalid overflow policy: "
+					+ dispatchOverflowPolicy);
+		}
+		synchronized (lock) {
+			if (started) {
+				throw new IllegalStateException("Scheduler already started");
+			}
+			this.dispatchOverflowPolicy = dispatchOverflowPolicy;
+		}
+	}
+
 	/**
 	 * Tests if this scheduler is started.
 	 * 
@@ -196,6 +747,44 @@ public class Scheduler {
 		}
 	}
 
+	/**
+	 * Returns the lateness of the last tick of the timer, that is how long
+	 * after its deadline the timer has woken up to check the scheduling
+	 * patterns. Ticks are measured by the {@link Scheduler#POLLING_ENGINE}
+	 * timer only.
+	 * 
+	 * @return The lateness of the last tick, in nanoseconds.
+	 * @since 2.3
+	 */
+	public long getLastTickLateness() {
+		return lastTickLateness;
+	}
+
+	/**
+	 * Returns the greatest lateness of a tick of the timer since the scheduler
+	 * has been started. Ticks are measured by the
+	 * {@link Scheduler#POLLING_ENGINE} timer only.
+	 * 
+	 * @return The greatest lateness of a tick, in nanoseconds.
+	 * @since 2.3
+	 */
+	public long getMaxTickLateness() {
+		return maxTickLateness;
+	}
+
+	/**
+	 * Returns how many tasks have been launched in each second of the last
+	 * hour. It shows how the launches are spread, in example by the jitter
+	 * windows of the tasks.
+	 * 
+	 * @return 3600 launch counts, oldest first, the last one being the
+	 *         current second.
+	 * @since 2.3
+	 */
+	public int[] getLoadHistogram() {
+		return loadHistogram.snapshot(clock.currentTimeMillis());
+	}
+
 	/**
 	 * Adds a {@link File} instance to the scheduler. Every minute the file will
 	 * be parsed. The scheduler will execute any declared task whose scheduling
@@ -209,6 +798,55 @@ public class Scheduler {
 	 */
 	public void scheduleFile(File file) {
 		fileTaskCollector.addFile(file);
+		wakeUpTimer();
+	}
+
+	/**
+	 * Returns the interval between two checks of the scheduled files.
+	 * 
+	 * @return The interval in millis, or 0 if the files are checked at every
+	 *         launch.
+	 * @since 2.3
+	 */
+	public long getFileWatchInterval() {
+		return fileWatchInterval;
+	}
+
+	/**
+	 * <p>
+	 * Sets the interval between two checks of the files scheduled with
+	 * {@link Scheduler#scheduleFile(File)}. By default the files are checked
+	 * every second, while launching the tasks. With a positive interval a
+	 * background thread checks them instead, parsing again only the changed
+	 * ones, and the launch reads the last parsed tasks without any file system
+	 * access. Set an interval up to 1000 millis to see the changes within a
+	 * second.
+	 * </p>
+	 * <p>
+	 * This method must be called before the scheduler is started.
+	 * </p>
+	 * 
+	 * @param fileWatchInterval
+	 *            The interval in millis, or 0 to check the files at every
+	 *            launch.
+	 * @throws IllegalArgumentException
+	 *             If the interval is negative.
+	 * @throws IllegalStateException
+	 *             If the scheduler is started.
+	 * @since 2.3
+	 */
+	public void setFileWatchInterval(long fileWatchInterval)
+			throws IllegalArgumentException, IllegalStateException {
+		if (fileWatchInterval < 0) {
+			throw new IllegalArgumentException("Negative interval: "
+					+ fileWatchInterval);
+		}
+		synchronized (lock) {
+			if (started) {
+				throw new IllegalStateException("Scheduler already started");
+			}
+			this.fileWatchInterval = fileWatchInterval;
+		}
 	}
 
 	/**
@@ -246,6 +884,7 @@ public class Scheduler {
 		synchronized (collectors) {
 			collectors.add(collector);
 		}
+		wakeUpTimer();
 	}
 
 	/**
@@ -328,6 +967,56 @@ public class Scheduler {
 		}
 	}
 
+	/**
+	 * Adds a {@link TaskRejectionListener} to the scheduler. It is notified
+	 * every time a launch is discarded by the dispatch queue.
+	 * 
+	 * @param listener
+	 *            The listener.
+	 * @since 2.3
+	 */
+	public void addTaskRejectionListener(TaskRejectionListener listener) {
+		synchronized (rejectionListeners) {
+			rejectionListeners.add(listener);
+		}
+	}
+
+	/**
+	 * Removes a {@link TaskRejectionListener} previously registered with the
+	 * {@link Scheduler#addTaskRejectionListener(TaskRejectionListener)}
+	 * method.
+	 * 
+	 * @param listener
+	 *            The listener.
+	 * @since 2.3
+	 */
+	public void removeTaskRejectionListener(TaskRejectionListener listener) {
+		synchronized (rejectionListeners) {
+			rejectionListeners.remove(listener);
+		}
+	}
+
+	/**
+	 * Returns an array containing any {@link TaskRejectionListener}
+	 * previously registered with the
+	 * {@link Scheduler#addTaskRejectionListener(TaskRejectionListener)}
+	 * method.
+	 * 
+	 * @return An array containing any registered
+	 *         {@link TaskRejectionListener}.
+	 * @since 2.3
+	 */
+	public TaskRejectionListener[] getTaskRejectionListeners() {
+		synchronized (rejectionListeners) {
+			int size = rejectionListeners.size();
+			TaskRejectionListener[] ret = new TaskRejectionListener[size];
+			for (int i = 0; i < size; i++) {
+				ret[i] = (TaskRejectionListener) rejectionListeners.get(i);
+			}
+			return ret;
+		}
+	}
+
 	/**
 	 * Returns an array containing any currently executing task, in the form of
 	 * {@link TaskExecutor} objects. Each running task is executed by a
@@ -385,7 +1074,34 @@ public class Scheduler {
 	 */
 	public String schedule(String schedulingPattern, Task task)
 			throws InvalidPatternException {
-		return schedule(new SchedulingPattern(schedulingPattern), task);
+		return schedule(SchedulingPattern.valueOf(schedulingPattern), task);
+	}
+
+	/**
+	 * This method schedules a task execution, spreading its launches over a
+	 * time window as {@link Task#setJitter(String, long)} does.
+	 * 
+	 * @param schedulingPattern
+	 *            The scheduling pattern for the task.
+	 * @param task
+	 *            The task.
+	 * @param jitterKey
+	 *            A key identifying the task, stable across restarts.
+	 * @param jitterWindow
+	 *            The window, in milliseconds.
+	 * @return The task auto-generated ID assigned by the scheduler.
+	 * @throws InvalidPatternException
+	 *             If the supplied pattern is not valid.
+	 * @throws IllegalArgumentException
+	 *             If the window is negative or the key is null.
+	 * @since 2.3
+	 */
+	public String schedule(String schedulingPattern, Task task,
+			String jitterKey, long jitterWindow)
+			throws InvalidPatternException, IllegalArgumentException {
+		SchedulingPattern pattern = SchedulingPattern.valueOf(schedulingPattern);
+		task.setJitter(jitterKey, jitterWindow);
+		return schedule(pattern, task);
 	}
 
 	/**
@@ -401,7 +1117,13 @@ public class Scheduler {
 	 * @since 2.0
 	 */
 	public String schedule(SchedulingPattern schedulingPattern, Task task) {
-		return memoryTaskCollector.add(schedulingPattern, task);
+		synchronized (memoryTaskCollector) {
+			String id = memoryTaskCollector.add(schedulingPattern, task);
+			if (queueTimer != null) {
+				queueTimer.add(id, schedulingPattern, task);
+			}
+			return id;
+		}
 	}
 
 	/**
@@ -417,7 +1139,7 @@ public class Scheduler {
 	 */
 	public void reschedule(Object id, String schedulingPattern)
 			throws InvalidPatternException {
-		reschedule((String) id, new SchedulingPattern(schedulingPattern));
+		reschedule((String) id, SchedulingPattern.valueOf(schedulingPattern));
 	}
 
 	/**
@@ -432,7 +1154,7 @@ public class Scheduler {
 	 */
 	public void reschedule(String id, String schedulingPattern)
 			throws InvalidPatternException {
-		reschedule(id, new SchedulingPattern(schedulingPattern));
+		reschedule(id, SchedulingPattern.valueOf(schedulingPattern));
 	}
 
 	/**
@@ -445,7 +1167,12 @@ public class Scheduler {
 	 * @since 2.0
 	 */
 	public void reschedule(String id, SchedulingPattern schedulingPattern) {
-		memoryTaskCollector.update(id, schedulingPattern);
+		synchronized (memoryTaskCollector) {
+			memoryTaskCollector.update(id, schedulingPattern);
+			if (queueTimer != null) {
+				queueTimer.update(id, schedulingPattern);
+			}
+		}
 	}
 
 	/**
@@ -466,7 +1193,12 @@ public class Scheduler {
 	 *            The ID of the task.
 	 */
 	public void deschedule(String id) {
-		memoryTaskCollector.remove(id);
+		synchronized (memoryTaskCollector) {
+			memoryTaskCollector.remove(id);
+			if (queueTimer != null) {
+				queueTimer.remove(id);
+			}
+		}
 	}
 
 	/**
@@ -528,7 +1260,9 @@ public class Scheduler {
 	}
 
 	/**
-	 * Executes immediately a task, without scheduling it.
+	 * Executes immediately a task, without scheduling it. If the launch is
+	 * discarded by the dispatch queue or by the executor service, the
+	 * registered {@link TaskRejectionListener} instances are notified.
 	 * 
 	 * @param task
 	 *            The task.
@@ -537,12 +1271,26 @@ public class Scheduler {
 	 *             If the scheduler is not started.
 	 */
 	public TaskExecutor launch(Task task) {
+		TaskExecutor e;
+		DispatchQueue queue;
 		synchronized (lock) {
 			if (!started) {
 				throw new IllegalStateException("Scheduler not started");
 			}
-			return spawnExecutor(task);
+			task.acquireExecution(true);
+			queue = dispatchQueue;
+			if (queue == null) {
+				return spawnExecutor(task);
+			}
+			e = new TaskExecutor(this, task);
+			synchronized (executors) {
+				executors.add(e);
+			}
 		}
+		// Waits for room in the dispatch queue out of the scheduler lock.
+		loadHistogram.record(clock.currentTimeMillis());
+		enqueueExecutor(e, queue, true);
+		return e;
 	}
 
 	/**
@@ -560,10 +1308,61 @@ public class Scheduler {
 			// Initializes required lists.
 			launchers = new ArrayList();
 			executors = new ArrayList();
+			lastTickLateness = 0;
+			maxTickLateness = 0;
+			loadHistogram.clear();
+			// Prepares the dispatch queue or the executor service.
+			if (dispatchQueueCapacity > 0) {
+				int parallelism = dispatchParallelism;
+				if (parallelism == 0) {
+					parallelism = Runtime.getRuntime().availableProcessors();
+				}
+				dispatchQueue = new DispatchQueue(this, dispatchQueueCapacity,
+						parallelism, dispatchOverflowPolicy, threadFactory,
+						daemon);
+				dispatchQueue.start();
+			} else if (executorService != null) {
+				pool = executorService;
+			} else if (threadPoolSize > 0) {
+				pool = buildThreadPool();
+			}
+			// Starts the file watcher.
+			if (fileWatchInterval > 0) {
+				watcher = new FileWatcherThread(this, fileTaskCollector,
+						fileWatchInterval);
+				watcher.setDaemon(true);
+				watcher.start();
+				clock.awaitWaiting(watcher);
+			}
+			// The jitter thread is started when needed.
+			synchronized (jitterLock) {
+				jitterEnabled = true;
+			}
 			// Starts the timer thread.
-			timer = new TimerThread(this);
+			if (engine == QUEUE_ENGINE || engine == WHEEL_ENGINE) {
+				TimerQueue queue;
+				if (engine == WHEEL_ENGINE) {
+					queue = new TimingWheel(clock.currentTimeMillis());
+				} else {
+					queue = new HeapTimerQueue();
+				}
+				QueueTimerThread aux = new QueueTimerThread(this, queue);
+				synchronized (memoryTaskCollector) {
+					String[] ids = memoryTaskCollector.getIds();
+					for (int i = 0; i < ids.length; i++) {
+						aux.add(ids[i], memoryTaskCollector
+								.getSchedulingPattern(ids[i]),
+								memoryTaskCollector.getTask(ids[i]));
+					}
+					queueTimer = aux;
+				}
+				timer = aux;
+			} else {
+				timer = new TimerThread(this);
+			}
 			timer.setDaemon(daemon);
 			timer.start();
+			clock.awaitWaiting(timer);
 			// Change the state of the scheduler.
 			started = true;
 		}
@@ -583,9 +1382,18 @@ public class Scheduler {
 				throw new IllegalStateException("Scheduler not started");
 			}
 			// Interrupts the timer and waits for its death.
+			synchronized (memoryTaskCollector) {
+				queueTimer = null;
+			}
 			timer.interrupt();
 			tillThreadDies(timer);
 			timer = null;
+			// Interrupts the file watcher and waits for its death.
+			if (watcher != null) {
+				watcher.interrupt();
+				tillThreadDies(watcher);
+				watcher = null;
+			}
 			// Interrupts any running launcher and waits for its death.
 			for (;;) {
 				LauncherThread launcher = null;
@@ -599,6 +1407,17 @@ public class Scheduler {
 				tillThreadDies(launcher);
 			}
 			launchers = null;
+			// Interrupts the jitter thread: the held launches are lost.
+			JitterThread aux;
+			synchronized (jitterLock) {
+				jitterEnabled = false;
+				aux = jitterThread;
+				jitterThread = null;
+			}
+			if (aux != null) {
+				aux.interrupt();
+				tillThreadDies(aux);
+			}
 			// Interrupts any running executor and waits for its death.
 			// Before exiting wait for all the active tasks end.
 			for (;;) {
@@ -615,6 +1434,16 @@ public class Scheduler {
 				tillExecutorDies(executor);
 			}
 			executors = null;
+			// Stops the workers of the dispatch queue.
+			if (dispatchQueue != null) {
+				dispatchQueue.shutdown();
+				dispatchQueue = null;
+			}
+			// Shuts down the thread pool, if it has been built here.
+			if (pool != null && pool != executorService) {
+				pool.shutdown();
+			}
+			pool = null;
 			// Change the state of the object.
 			started = false;
 		}
@@ -622,6 +1451,20 @@ public class Scheduler {
 
 	// -- PACKAGE RESERVED METHODS --------------------------------------------
 
+	/**
+	 * Records the lateness of a timer tick.
+	 * 
+	 * @param lateness
+	 *            How long after its deadline the tick happened, in
+	 *            nanoseconds.
+	 */
+	void notifyTickLateness(long lateness) {
+		lastTickLateness = lateness;
+		if (lateness > maxTickLateness) {
+			maxTickLateness = lateness;
+		}
+	}
+
 	/**
 	 * Starts a launcher thread.
 	 * 
@@ -630,40 +1473,175 @@ public class Scheduler {
 	 * @return The spawned launcher.
 	 */
 	LauncherThread spawnLauncher(long referenceTimeInMillis) {
+		return spawnLauncher(referenceTimeInMillis - 1000,
+				referenceTimeInMillis, true);
+	}
+
+	/**
+	 * Starts a launcher thread. If more than a second passed since the last
+	 * launch, the launcher also recovers the launches missed in between,
+	 * according to the misfire policy of each task.
+	 * 
+	 * @param lastTimeInMillis
+	 *            Reference time in millis of the last launch.
+	 * @param referenceTimeInMillis
+	 *            Reference time in millis for the launcher.
+	 * @param memoryTasks
+	 *            If false the launcher skips the tasks scheduled in memory.
+	 * @return The spawned launcher.
+	 */
+	LauncherThread spawnLauncher(long lastTimeInMillis,
+			long referenceTimeInMillis, boolean memoryTasks) {
 		TaskCollector[] nowCollectors;
 		synchronized (collectors) {
-			int size = collectors.size();
+			int first = memoryTasks ? 0 : 1;
+			int size = collectors.size() - first;
 			nowCollectors = new TaskCollector[size];
 			for (int i = 0; i < size; i++) {
-				nowCollectors[i] = (TaskCollector) collectors.get(i);
+				nowCollectors[i] = (TaskCollector) collectors.get(i + first);
 			}
 		}
 		LauncherThread l = new LauncherThread(this, nowCollectors,
-				referenceTimeInMillis);
+				lastTimeInMillis, referenceTimeInMillis);
 		synchronized (launchers) {
 			launchers.add(l);
 		}
 		l.setDaemon(daemon);
 		l.start();
+		clock.track(l);
 		return l;
 	}
 
 	/**
-	 * Starts the given task within a task executor.
+	 * Checks whether any file or custom {@link TaskCollector} is registered.
+	 * Their tasks can't be queued by the {@link Scheduler#QUEUE_ENGINE} and
+	 * {@link Scheduler#WHEEL_ENGINE} engines, and they have to be collected
+	 * every second.
+	 * 
+	 * @return true if any file or custom collector is registered.
+	 */
+	boolean hasPolledCollectors() {
+		if (fileTaskCollector.size() > 0) {
+			return true;
+		}
+		synchronized (collectors) {
+			return collectors.size() > 2;
+		}
+	}
+
+	/**
+	 * Starts a task fired by its scheduling pattern. If the task has a jitter
+	 * offset, the launch is held until the offset has passed.
+	 * 
+	 * @param task
+	 *            The task.
+	 */
+	void dispatchTask(Task task) {
+		long offset = task.getJitterOffset();
+		if (offset > 0) {
+			JitterThread aux = jitterThread;
+			if (aux == null) {
+				aux = startJitterThread();
+			}
+			if (aux != null) {
+				aux.add(task, clock.currentTimeMillis() + offset);
+				return;
+			}
+		}
+		launchTask(task);
+	}
+
+	/**
+	 * Starts the jitter thread, unless it is already running.
+	 * 
+	 * @return The jitter thread, or null if the scheduler is stopping.
+	 */
+	private JitterThread startJitterThread() {
+		synchronized (jitterLock) {
+			if (jitterEnabled && jitterThread == null) {
+				JitterThread aux = new JitterThread(this);
+				aux.setDaemon(true);
+				aux.start();
+				clock.awaitWaiting(aux);
+				jitterThread = aux;
+			}
+			return jitterThread;
+		}
+	}
+
+	/**
+	 * Starts a task fired by its scheduling pattern, unless its concurrency
+	 * policy refuses the launch.
+	 * 
+	 * @param task
+	 *            The task.
+	 */
+	void launchTask(Task task) {
+		if (task.acquireExecution(false)) {
+			spawnExecutor(task);
+		}
+	}
+
+	/**
+	 * Starts the given task within a task executor. The execution must have
+	 * already been counted with {@link Task#acquireExecution(boolean)}.
 	 * 
 	 * @param task
 	 *            The task.
 	 * @return The spawned task executor.
 	 */
 	TaskExecutor spawnExecutor(Task task) {
+		loadHistogram.record(clock.currentTimeMillis());
 		TaskExecutor e = new TaskExecutor(this, task);
 		synchronized (executors) {
 			executors.add(e);
 		}
-		e.start(daemon);
+		if (dispatchQueue != null) {
+			// Scheduler threads never wait for room in the queue.
+			enqueueExecutor(e, dispatchQueue, false);
+		} else if (pool != null) {
+			try {
+				e.start(pool);
+			} catch (RuntimeException ex) {
+				// Rejected by the executor service: the launch is lost.
+				e.discard();
+				notifyTaskRejected(e);
+			}
+		} else {
+			e.start(threadFactory, daemon);
+		}
 		return e;
 	}
 
+	/**
+	 * Puts an executor in the dispatch queue, discarding the executors
+	 * rejected by the queue.
+	 * 
+	 * @param e
+	 *            The executor.
+	 * @param queue
+	 *            The dispatch queue.
+	 * @param wait
+	 *            true to wait for room in the queue, when the overflow policy
+	 *            is {@link Scheduler#OVERFLOW_BLOCK}.
+	 */
+	private void enqueueExecutor(TaskExecutor e, DispatchQueue queue,
+			boolean wait) {
+		TaskExecutor discarded;
+		try {
+			discarded = e.enqueue(queue, wait);
+		} catch (InterruptedException ex) {
+			// Interrupted while waiting for room: the launch is lost.
+			e.discard();
+			Thread.currentThread().interrupt();
+			return;
+		}
+		if (discarded != null) {
+			discarded.discard();
+			notifyTaskRejected(discarded);
+		}
+	}
+
 	/**
 	 * This method is called by a launcher thread to notify that the execution
 	 * is completed.
@@ -685,8 +1663,37 @@ public class Scheduler {
 	 *            The executor which has completed its task.
 	 */
 	void notifyExecutorCompleted(TaskExecutor executor) {
-		synchronized (executors) {
-			executors.remove(executor);
+		Task task = executor.getTask();
+		if (task.releaseExecution()) {
+			// Starts the waiting launch while the completed executor is still
+			// listed, so that a stopping scheduler waits for it too.
+			spawnExecutor(task);
+		}
+		// A launch waiting for room in the dispatch queue can end after the
+		// scheduler has stopped.
+		ArrayList aux = executors;
+		if (aux != null) {
+			synchronized (aux) {
+				aux.remove(executor);
+			}
+		}
+	}
+
+	/**
+	 * Notifies every registered rejection listener that a launch has been
+	 * discarded by the dispatch queue or rejected by the executor service.
+	 * 
+	 * @param executor
+	 *            The discarded task executor.
+	 */
+	void notifyTaskRejected(TaskExecutor executor) {
+		synchronized (rejectionListeners) {
+			int size = rejectionListeners.size();
+			for (int i = 0; i < size; i++) {
+				TaskRejectionListener l = (TaskRejectionListener) rejectionListeners
+						.get(i);
+				l.taskRejected(executor);
+			}
 		}
 	}
 
@@ -749,6 +1756,47 @@ public class Scheduler {
 
 	// -- PRIVATE METHODS -----------------------------------------------------
 
+	/**
+	 * Builds the thread pool sized with
+	 * {@link Scheduler#setThreadPoolSize(int)}. Idle threads are discarded
+	 * after a minute.
+	 * 
+	 * @return The thread pool.
+	 */
+	private ExecutorService buildThreadPool() {
+		ThreadPoolExecutor ret = new ThreadPoolExecutor(threadPoolSize,
+				threadPoolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue(),
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread t;
+						if (threadFactory != null) {
+							t = threadFactory.newThread(r);
+						} else {
+							t = new Thread(r);
+							t.setDaemon(daemon);
+						}
+						t.setName("cron4j::scheduler[" + guid + "]::worker["
+								+ GUIDGenerator.generate() + "]");
+						return t;
+					}
+				});
+		ret.allowCoreThreadTimeOut(true);
+		return ret;
+	}
+
+	/**
+	 * Wakes up the timer of the {@link Scheduler#QUEUE_ENGINE} and
+	 * {@link Scheduler#WHEEL_ENGINE} engines, so that newly registered files
+	 * and collectors are soon queried.
+	 */
+	private void wakeUpTimer() {
+		synchronized (memoryTaskCollector) {
+			if (queueTimer != null) {
+				queueTimer.wakeUp();
+			}
+		}
+	}
+
 	/**
 	 * It waits until the given thread is dead. It is similar to
 	 * {@link Thread#join()}, but this one avoids {@link InterruptedException}
@@ -18,15 +18,17 @@
  */
 package cron4j;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.TimeZone;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>
@@ -183,6 +185,135 @@ public class SchedulingPattern {
      */
     private static final ValueParser DAY_OF_WEEK_VALUE_PARSER = new DayOfWeekValueParser();
 
+    /**
+     * The intern cache, mapping normalized pattern strings to weak references
+     * to the shared instances. A pattern no longer used by anyone is collected
+     * and its entry is removed, so the cache holds only the patterns in use.
+     */
+    private static final ConcurrentHashMap INTERN_CACHE = new ConcurrentHashMap();
+
+    /**
+     * The queue of the cache references whose pattern has been collected.
+     */
+    private static final ReferenceQueue INTERN_QUEUE = new ReferenceQueue();
+
+    /**
+     * <p>
+     * Returns a SchedulingPattern for the given string, sharing the same
+     * instance among identical patterns. Patterns are compared after the
+     * normalization of their spaces: leading and trailing spaces are removed,
+     * sequences of spaces and tabs become a single space, and the spaces
+     * around the pipe character are removed. The returned instance is built
+     * from the normalized string, which is returned by its toString() method.
+     * </p>
+     * <p>
+     * A SchedulingPattern can't change after its construction, so the same
+     * instance can be safely shared among many tasks and threads. A shared
+     * instance is kept as long as it is referenced, in example by a scheduled
+     * task, and then it is discarded.
+     * </p>
+     *
+     * @param schedulingPattern The pattern as a crontab-like string.
+     * @return The shared SchedulingPattern instance.
+     * @throws InvalidPatternException If the supplied string is not a valid pattern.
+     * @since 2.3
+     */
+    public static SchedulingPattern valueOf(String schedulingPattern)
+            throws InvalidPatternException {
+        String key = normalize(schedulingPattern);
+        SchedulingPattern ret = lookup(key);
+        if (ret == null) {
+            ret = intern(key, new SchedulingPattern(key));
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a shared SchedulingPattern for the given string, building it
+     * from the bit masks of its fields if it is not in the intern cache.
+     *
+     * @param schedulingPattern The pattern as a crontab-like string.
+     * @param fieldMasks        The masks of the fields, as returned by
+     *                          {@link SchedulingPattern#getFieldMasks()}.
+     * @return The shared SchedulingPattern instance.
+     */
+    static SchedulingPattern valueOf(String schedulingPattern, long[][] fieldMasks) {
+        String key = normalize(schedulingPattern);
+        SchedulingPattern ret = lookup(key);
+        if (ret == null) {
+            ret = intern(key, new SchedulingPattern(key, fieldMasks));
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the shared instance of a pattern, if there is one.
+     *
+     * @param key The normalized pattern string.
+     * @return The shared instance, or null.
+     */
+    private static SchedulingPattern lookup(String key) {
+        InternedPattern ref = (InternedPattern) INTERN_CACHE.get(key);
+        return ref != null ? (SchedulingPattern) ref.get() : null;
+    }
+
+    /**
+     * Shares a pattern, unless another thread shared the same one meanwhile.
+     *
+     * @param key     The normalized pattern string.
+     * @param pattern The pattern.
+     * @return The shared instance.
+     */
+    private static SchedulingPattern intern(String key, SchedulingPattern pattern) {
+        // Forgets the collected patterns.
+        InternedPattern stale;
+        while ((stale = (InternedPattern) INTERN_QUEUE.poll()) != null) {
+            INTERN_CACHE.remove(stale.key, stale);
+        }
+        InternedPattern ref = new InternedPattern(key, pattern);
+        for (;;) {
+            InternedPattern old = (InternedPattern) INTERN_CACHE.putIfAbsent(key, ref);
+            if (old == null) {
+                return pattern;
+            }
+            SchedulingPattern aux = (SchedulingPattern) old.get();
+            if (aux != null) {
+                return aux;
+            }
+            if (INTERN_CACHE.replace(key, old, ref)) {
+                return pattern;
+            }
+        }
+    }
+
+    /**
+     * Normalizes the spaces of a pattern string.
+     *
+     * @param pattern The pattern as a crontab-like string.
+     * @return The normalized string.
+     */
+    static String normalize(String pattern) {
+        int size = pattern.length();
+        StringBuffer b = new StringBuffer(size);
+        boolean space = false;
+        for (int i = 0; i < size; i++) {
+            char c = pattern.charAt(i);
+            if (c == ' ' || c == '\t') {
+                space = true;
+            } else {
+                if (c == '|') {
+                    space = false;
+                } else if (space && b.length() > 0
+                        && b.charAt(b.length() - 1) != '|') {
+                    b.append(' ');
+                }
+                space = false;
+                b.append(c);
+            }
+        }
+        return b.toString();
+    }
+
     /**
      * Validates a string as a scheduling pattern.
      *
@@ -191,6 +322,9 @@ public class SchedulingPattern {
      * false otherwise.
      */
     public static boolean validate(String schedulingPattern) {
+        if (lookup(normalize(schedulingPattern)) != null) {
+            return true;
+        }
         try {
             new SchedulingPattern(schedulingPattern);
         } catch (InvalidPatternException e) {
@@ -239,6 +373,38 @@ public class SchedulingPattern {
      */
     protected int matcherSize = 0;
 
+    /**
+     * The "second" field of each matcher group, compiled into a bit mask.
+     */
+    protected long[] secondMasks;
+
+    /**
+     * The "minute" field of each matcher group, compiled into a bit mask.
+     */
+    protected long[] minuteMasks;
+
+    /**
+     * The "hour" field of each matcher group, compiled into a bit mask.
+     */
+    protected long[] hourMasks;
+
+    /**
+     * The "day of month" field of each matcher group, compiled into a bit
+     * mask for every month and leap year combination, as returned by
+     * {@link DayOfMonthValueMatcher#getMask(int, boolean)}.
+     */
+    protected long[][] dayOfMonthMasks;
+
+    /**
+     * The "month" field of each matcher group, compiled into a bit mask.
+     */
+    protected long[] monthMasks;
+
+    /**
+     * The "day of week" field of each matcher group, compiled into a bit mask.
+     */
+    protected long[] dayOfWeekMasks;
+
     //add
     protected static final Map<String, Integer> monthMap = new HashMap(20);
     protected static final Map<String, Integer> dayMap = new HashMap(60);
@@ -318,10 +484,108 @@ public class SchedulingPattern {
             }
             matcherSize++;
         }
+        values = null;
+        compileMasks();
+    }
+
+    /**
+     * Builds a SchedulingPattern from the bit masks of its fields, as returned
+     * by {@link SchedulingPattern#getFieldMasks()}, without parsing it again.
+     *
+     * @param pattern    The pattern as a string.
+     * @param fieldMasks The masks of the six fields of every matcher group.
+     */
+    SchedulingPattern(String pattern, long[][] fieldMasks) {
+        this.asString = pattern;
+        for (int i = 0; i < fieldMasks.length; i++) {
+            long[] masks = fieldMasks[i];
+            secondMatchers.add(buildValueMatcher(masks[0], false));
+            minuteMatchers.add(buildValueMatcher(masks[1], false));
+            hourMatchers.add(buildValueMatcher(masks[2], false));
+            dayOfMonthMatchers.add(buildValueMatcher(masks[3], true));
+            monthMatchers.add(buildValueMatcher(masks[4], false));
+            dayOfWeekMatchers.add(buildValueMatcher(masks[5], false));
+            matcherSize++;
+        }
+        compileMasks();
+    }
+
+    /**
+     * Returns the bit masks of the fields of the pattern, which can be used to
+     * build it again with the {@link SchedulingPattern#SchedulingPattern(String, long[][])}
+     * constructor.
+     *
+     * @return The masks of the second, minute, hour, day of month, month and
+     *         day of week fields, for every matcher group.
+     */
+    long[][] getFieldMasks() {
+        long[][] ret = new long[matcherSize][];
+        for (int i = 0; i < matcherSize; i++) {
+            ret[i] = new long[] {
+                    ((ValueMatcher) secondMatchers.get(i)).getMask(),
+                    ((ValueMatcher) minuteMatchers.get(i)).getMask(),
+                    ((ValueMatcher) hourMatchers.get(i)).getMask(),
+                    ((ValueMatcher) dayOfMonthMatchers.get(i)).getMask(),
+                    ((ValueMatcher) monthMatchers.get(i)).getMask(),
+                    ((ValueMatcher) dayOfWeekMatchers.get(i)).getMask() };
+        }
+        return ret;
+    }
+
+    /**
+     * Builds a ValueMatcher from a bit mask.
+     *
+     * @param mask       The accepted values, as a bit mask.
+     * @param dayOfMonth true if the matcher is for the "day of month" field.
+     * @return The requested ValueMatcher.
+     */
+    private static ValueMatcher buildValueMatcher(long mask, boolean dayOfMonth) {
+        if (mask == -1L) {
+            return new AlwaysTrueValueMatcher();
+        } else if (dayOfMonth) {
+            return new DayOfMonthValueMatcher(mask);
+        } else {
+            return new IntArrayValueMatcher(mask);
+        }
     }
 
+    /**
+     * The values collected while parsing a field.
+     */
     private ArrayList values;
 
+    /**
+     * Compiles every matcher into a bit mask, so that matching a field is a
+     * single shift-and-test.
+     */
+    private void compileMasks() {
+        secondMasks = new long[matcherSize];
+        minuteMasks = new long[matcherSize];
+        hourMasks = new long[matcherSize];
+        dayOfMonthMasks = new long[matcherSize][24];
+        monthMasks = new long[matcherSize];
+        dayOfWeekMasks = new long[matcherSize];
+        for (int i = 0; i < matcherSize; i++) {
+            secondMasks[i] = ((ValueMatcher) secondMatchers.get(i)).getMask();
+            minuteMasks[i] = ((ValueMatcher) minuteMatchers.get(i)).getMask();
+            hourMasks[i] = ((ValueMatcher) hourMatchers.get(i)).getMask();
+            monthMasks[i] = ((ValueMatcher) monthMatchers.get(i)).getMask();
+            dayOfWeekMasks[i] = ((ValueMatcher) dayOfWeekMatchers.get(i)).getMask();
+            ValueMatcher dayOfMonthMatcher = (ValueMatcher) dayOfMonthMatchers.get(i);
+            for (int month = 1; month <= 12; month++) {
+                for (int leap = 0; leap < 2; leap++) {
+                    long mask;
+                    if (dayOfMonthMatcher instanceof DayOfMonthValueMatcher) {
+                        mask = ((DayOfMonthValueMatcher) dayOfMonthMatcher).getMask(month, leap == 1);
+                    } else {
+                        mask = dayOfMonthMatcher.getMask();
+                    }
+                    dayOfMonthMasks[i][((month - 1) << 1) | leap] = mask;
+                }
+            }
+        }
+    }
+
     /**
      * A ValueMatcher utility builder.
      *
@@ -1031,31 +1295,27 @@ public class SchedulingPattern {
      * @return true if the given timestamp matches the pattern.
      */
     public boolean match(TimeZone timezone, long millis) {
-        GregorianCalendar gc = new GregorianCalendar();
-        gc.setTimeInMillis(millis);
-        gc.setTimeZone(timezone);
-        int second = gc.get(Calendar.SECOND);
-        int minute = gc.get(Calendar.MINUTE);
-        int hour = gc.get(Calendar.HOUR_OF_DAY);
-        int dayOfMonth = gc.get(Calendar.DAY_OF_MONTH);
-        int month = gc.get(Calendar.MONTH) + 1;
-        int dayOfWeek = gc.get(Calendar.DAY_OF_WEEK) - 1;
-        int year = gc.get(Calendar.YEAR);
+        return match(new TimeFields(timezone, millis));
+    }
+
+    /**
+     * This methods returns true if the given time fields match the pattern.
+     * Matching doesn't allocate anything, so the same {@link TimeFields}
+     * instance can be checked against many patterns cheaply.
+     *
+     * @param fields The time fields.
+     * @return true if the given time fields match the pattern.
+     * @since 2.3
+     */
+    public boolean match(TimeFields fields) {
+        int monthIndex = ((fields.month - 1) << 1) | (fields.leapYear ? 1 : 0);
         for (int i = 0; i < matcherSize; i++) {
-            ValueMatcher secondMatcher = (ValueMatcher) secondMatchers.get(i);
-            ValueMatcher minuteMatcher = (ValueMatcher) minuteMatchers.get(i);
-            ValueMatcher hourMatcher = (ValueMatcher) hourMatchers.get(i);
-            ValueMatcher dayOfMonthMatcher = (ValueMatcher) dayOfMonthMatchers.get(i);
-            ValueMatcher monthMatcher = (ValueMatcher) monthMatchers.get(i);
-            ValueMatcher dayOfWeekMatcher = (ValueMatcher) dayOfWeekMatchers.get(i);
-            boolean eval = secondMatcher.match(second)
-                    && minuteMatcher.match(minute)
-                    && hourMatcher.match(hour)
-                    && ((dayOfMonthMatcher instanceof DayOfMonthValueMatcher) ? ((DayOfMonthValueMatcher) dayOfMonthMatcher)
-                    .match(dayOfMonth, month, gc.isLeapYear(year))
-                    : dayOfMonthMatcher.match(dayOfMonth))
-                    && monthMatcher.match(month)
-                    && dayOfWeekMatcher.match(dayOfWeek);
+            boolean eval = ((secondMasks[i] >>> fields.second) & 1L) != 0
+                    && ((minuteMasks[i] >>> fields.minute) & 1L) != 0
+                    && ((hourMasks[i] >>> fields.hour) & 1L) != 0
+                    && ((dayOfMonthMasks[i][monthIndex] >>> fields.dayOfMonth) & 1L) != 0
+                    && ((monthMasks[i] >>> fields.month) & 1L) != 0
+                    && ((dayOfWeekMasks[i] >>> fields.dayOfWeek) & 1L) != 0;
             if (eval) {
                 return true;
             }
@@ -1313,4 +1573,21 @@ public class SchedulingPattern {
 
     }
 
+    /**
+     * A weak reference to a shared pattern, remembering its cache key.
+     */
+    private static class InternedPattern extends WeakReference {
+
+        /**
+         * The normalized pattern string.
+         */
+        private final String key;
+
+        public InternedPattern(String key, SchedulingPattern pattern) {
+            super(pattern, INTERN_QUEUE);
+            this.key = key;
+        }
+
+    }
+
 }
@@ -64,6 +64,33 @@ class StaticMethodTask extends Task {
 		this.args = args;
 	}
 
+	/**
+	 * Returns the Java class name.
+	 * 
+	 * @return The Java class name.
+	 */
+	String getClassName() {
+		return className;
+	}
+
+	/**
+	 * Returns the name of the static method.
+	 * 
+	 * @return The name of the static method.
+	 */
+	String getMethodName() {
+		return methodName;
+	}
+
+	/**
+	 * Returns the arguments for the static method.
+	 * 
+	 * @return The arguments for the static method.
+	 */
+	String[] getArgs() {
+		return args;
+	}
+
 	/**
 	 * Implements {@link Task#execute(TaskExecutionContext)}. It uses Java
 	 * reflection to load the given class and call the given static method with
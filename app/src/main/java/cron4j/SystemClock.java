@@ -0,0 +1,63 @@
+/*
+ * cron4j - A pure Java cron-like scheduler
+ * 
+ * Copyright (C) 2007-2010 Carlo Pelliccia (www.sauronsoftware.it)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version
+ * 2.1, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License 2.1 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License version 2.1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package cron4j;
+
+/**
+ * <p>
+ * The {@link Clock} backed by the system time, used by default by every
+ * {@link Scheduler}.
+ * </p>
+ * 
+ * @since 2.3
+ */
+class SystemClock implements Clock {
+
+	/**
+	 * The shared instance.
+	 */
+	static final SystemClock INSTANCE = new SystemClock();
+
+	public long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+
+	public void waitFor(Object monitor, long nanos)
+			throws InterruptedException {
+		if (nanos == Long.MAX_VALUE) {
+			monitor.wait();
+		} else if (nanos > 0) {
+			monitor.wait(nanos / 1000000, (int) (nanos % 1000000));
+		}
+	}
+
+	public void wakeUp(Object monitor) {
+		monitor.notifyAll();
+	}
+
+	public void awaitWaiting(Thread thread) {
+	}
+
+	public void track(Thread thread) {
+	}
+
+}
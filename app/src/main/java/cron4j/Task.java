@@ -18,6 +18,8 @@
  */
 package cron4j;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * <p>
  * Abstract base representation of a cron4j task.
@@ -45,17 +47,145 @@ package cron4j;
  * {@link Task#canBeStopped()}, {@link Task#supportsCompletenessTracking()}
  * and/or {@link Task#supportsStatusTracking()}.
  * </p>
+ * <p>
+ * The misfire policy of a task tells the scheduler what to do when the task
+ * should have been launched while the scheduler couldn't check it, in example
+ * during a long garbage collection pause or when the system clock jumps
+ * ahead. See {@link Task#setMisfirePolicy(int)}.
+ * </p>
+ * <p>
+ * The concurrency policy of a task tells the scheduler what to do when the
+ * task is fired while a previous execution is still running. See
+ * {@link Task#setConcurrencyPolicy(int)}.
+ * </p>
  * 
  * @author Carlo Pelliccia
  * @since 2.0
  */
 public abstract class Task {
 
+	/**
+	 * Misfire policy: the launches missed by the scheduler are recovered with
+	 * a single launch, as soon as possible.
+	 * 
+	 * @since 2.3
+	 */
+	public static final int MISFIRE_FIRE_ONCE = 0;
+
+	/**
+	 * Misfire policy: every launch missed by the scheduler is recovered, as
+	 * soon as possible.
+	 * 
+	 * @since 2.3
+	 */
+	public static final int MISFIRE_FIRE_ALL = 1;
+
+	/**
+	 * Misfire policy: the launches missed by the scheduler are lost. This is
+	 * the default policy.
+	 * 
+	 * @since 2.3
+	 */
+	public static final int MISFIRE_SKIP = 2;
+
+	/**
+	 * Concurrency policy: the task is launched every time it is fired, however
+	 * many executions are still running. This is the default policy.
+	 * 
+	 * @since 2.3
+	 */
+	public static final int CONCURRENCY_ALLOW = 0;
+
+	/**
+	 * Concurrency policy: the task is not launched if an execution is still
+	 * running.
+	 * 
+	 * @since 2.3
+	 */
+	public static final int CONCURRENCY_SKIP = 1;
+
+	/**
+	 * Concurrency policy: if an execution is still running, the task is
+	 * launched again as soon as it ends. Only one launch is kept waiting.
+	 * 
+	 * @since 2.3
+	 */
+	public static final int CONCURRENCY_QUEUE_ONE = 2;
+
+	/**
+	 * Concurrency policy: the task is not launched if the number of running
+	 * executions has reached the limit set with
+	 * {@link Task#setMaxConcurrency(int)}.
+	 * 
+	 * @since 2.3
+	 */
+	public static final int CONCURRENCY_LIMIT = 3;
+
+	/**
+	 * Priority: the task is taken from the dispatch queue after any other.
+	 * 
+	 * @since 2.3
+	 */
+	public static final int PRIORITY_LOW = 0;
+
+	/**
+	 * Priority: the default priority.
+	 * 
+	 * @since 2.3
+	 */
+	public static final int PRIORITY_NORMAL = 1;
+
+	/**
+	 * Priority: the task is taken from the dispatch queue before any other.
+	 * 
+	 * @since 2.3
+	 */
+	public static final int PRIORITY_HIGH = 2;
+
 	/**
 	 * The ID for this task. Also used as an instance synchronization lock.
 	 */
 	private Object id = GUIDGenerator.generate();
 
+	/**
+	 * The misfire policy.
+	 */
+	private int misfirePolicy = MISFIRE_SKIP;
+
+	/**
+	 * The concurrency policy.
+	 */
+	private int concurrencyPolicy = CONCURRENCY_ALLOW;
+
+	/**
+	 * The limit of running executions for the
+	 * {@link Task#CONCURRENCY_LIMIT} policy.
+	 */
+	private int maxConcurrency = 1;
+
+	/**
+	 * The priority in the dispatch queue.
+	 */
+	private int priority = PRIORITY_NORMAL;
+
+	/**
+	 * How long the launches of this task are delayed, in millis.
+	 */
+	private long jitterOffset = 0;
+
+	/**
+	 * Flag set in {@link Task#executions} when a launch is waiting for the
+	 * running execution to end.
+	 */
+	private static final int QUEUED = 1 << 30;
+
+	/**
+	 * The number of running executions, in the bits below {@link Task#QUEUED},
+	 * and the {@link Task#QUEUED} flag. Both are kept in a single value, so
+	 * that they are always changed together.
+	 */
+	private final AtomicInteger executions = new AtomicInteger();
+
 	/**
 	 * Empty constructor, does nothing.
 	 */
@@ -71,6 +201,288 @@ public abstract class Task {
 		return id;
 	}
 
+	/**
+	 * Returns the misfire policy of this task.
+	 * 
+	 * @return One of {@link Task#MISFIRE_FIRE_ONCE},
+	 *         {@link Task#MISFIRE_FIRE_ALL} and {@link Task#MISFIRE_SKIP}.
+	 * @since 2.3
+	 */
+	public int getMisfirePolicy() {
+		return misfirePolicy;
+	}
+
+	/**
+	 * <p>
+	 * Sets the misfire policy of this task.
+	 * </p>
+	 * <p>
+	 * The scheduler checks its tasks every second. If some seconds pass
+	 * without a check, in example because of a long garbage collection pause
+	 * or because the system clock jumps ahead, the scheduler detects the gap
+	 * and, at the next check, it recovers the launches missed in it, according
+	 * to the policy of each task:
+	 * </p>
+	 * <ul>
+	 * <li>{@link Task#MISFIRE_FIRE_ONCE} - the task is launched once, however
+	 * many launches it missed.</li>
+	 * <li>{@link Task#MISFIRE_FIRE_ALL} - the task is launched once for every
+	 * launch it missed.</li>
+	 * <li>{@link Task#MISFIRE_SKIP} - the missed launches are lost. This is
+	 * the default, so recovering missed launches is opt-in.</li>
+	 * </ul>
+	 * 
+	 * @param misfirePolicy
+	 *            One of {@link Task#MISFIRE_FIRE_ONCE},
+	 *            {@link Task#MISFIRE_FIRE_ALL} and {@link Task#MISFIRE_SKIP}.
+	 * @throws IllegalArgumentException
+	 *             If the policy is not valid.
+	 * @since 2.3
+	 */
+	public void setMisfirePolicy(int misfirePolicy)
+			throws IllegalArgumentException {
+		if (misfirePolicy != MISFIRE_FIRE_ONCE
+				&& misfirePolicy != MISFIRE_FIRE_ALL
+				&& misfirePolicy != MISFIRE_SKIP) {
+			throw new IllegalArgumentException("Invalid misfire policy: "
+					+ misfirePolicy);
+		}
+		this.misfirePolicy = misfirePolicy;
+	}
+
+	/**
+	 * Returns the concurrency policy of this task.
+	 * 
+	 * @return One of {@link Task#CONCURRENCY_ALLOW},
+	 *         {@link Task#CONCURRENCY_SKIP},
+	 *         {@link Task#CONCURRENCY_QUEUE_ONE} and
+	 *         {@link Task#CONCURRENCY_LIMIT}.
+	 * @since 2.3
+	 */
+	public int getConcurrencyPolicy() {
+		return concurrencyPolicy;
+	}
+
+	/**
+	 * <p>
+	 * Sets the concurrency policy of this task.
+	 * </p>
+	 * <p>
+	 * When the task is fired while previous executions are still running, the
+	 * scheduler acts according to the policy:
+	 * </p>
+	 * <ul>
+	 * <li>{@link Task#CONCURRENCY_ALLOW} - the task is launched anyway. This
+	 * is the default.</li>
+	 * <li>{@link Task#CONCURRENCY_SKIP} - the launch is lost.</li>
+	 * <li>{@link Task#CONCURRENCY_QUEUE_ONE} - the task is launched again as
+	 * soon as the running execution ends. Further launches fired in the
+	 * meantime are lost.</li>
+	 * <li>{@link Task#CONCURRENCY_LIMIT} - the task is launched only if less
+	 * than {@link Task#getMaxConcurrency()} executions are running, otherwise
+	 * the launch is lost.</li>
+	 * </ul>
+	 * <p>
+	 * The policy applies to the launches fired by the scheduling patterns.
+	 * Tasks launched with {@link Scheduler#launch(Task)} always start, but
+	 * they are counted as running executions.
+	 * </p>
+	 * 
+	 * @param concurrencyPolicy
+	 *            One of {@link Task#CONCURRENCY_ALLOW},
+	 *            {@link Task#CONCURRENCY_SKIP},
+	 *            {@link Task#CONCURRENCY_QUEUE_ONE} and
+	 *            {@link Task#CONCURRENCY_LIMIT}.
+	 * @throws IllegalArgumentException
+	 *             If the policy is not valid.
+	 * @since 2.3
+	 */
+	public void setConcurrencyPolicy(int concurrencyPolicy)
+			throws IllegalArgumentException {
+		if (concurrencyPolicy != CONCURRENCY_ALLOW
+				&& concurrencyPolicy != CONCURRENCY_SKIP
+				&& concurrencyPolicy != CONCURRENCY_QUEUE_ONE
+				&& concurrencyPolicy != CONCURRENCY_LIMIT) {
+			throw new IllegalArgumentException("Invalid concurrency policy: "
+					+ concurrencyPolicy);
+		}
+		this.concurrencyPolicy = concurrencyPolicy;
+	}
+
+	/**
+	 * Returns the limit of running executions for the
+	 * {@link Task#CONCURRENCY_LIMIT} policy.
+	 * 
+	 * @return The limit of running executions.
+	 * @since 2.3
+	 */
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/**
+	 * Sets the limit of running executions for the
+	 * {@link Task#CONCURRENCY_LIMIT} policy. The default limit is 1.
+	 * 
+	 * @param maxConcurrency
+	 *            The limit of running executions.
+	 * @throws IllegalArgumentException
+	 *             If the limit is less than 1.
+	 * @since 2.3
+	 */
+	public void setMaxConcurrency(int maxConcurrency)
+			throws IllegalArgumentException {
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("Invalid concurrency limit: "
+					+ maxConcurrency);
+		}
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	/**
+	 * Returns the priority of this task in the dispatch queue.
+	 * 
+	 * @return One of {@link Task#PRIORITY_LOW}, {@link Task#PRIORITY_NORMAL}
+	 *         and {@link Task#PRIORITY_HIGH}.
+	 * @since 2.3
+	 */
+	public int getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Sets the priority of this task in the dispatch queue. When the dispatch
+	 * queue of the scheduler is enabled, the launches waiting in the queue are
+	 * taken by priority, and in launch order within the same priority. The
+	 * priority has no effect if the dispatch queue is disabled.
+	 * 
+	 * @param priority
+	 *            One of {@link Task#PRIORITY_LOW}, {@link Task#PRIORITY_NORMAL}
+	 *            and {@link Task#PRIORITY_HIGH}.
+	 * @throws IllegalArgumentException
+	 *             If the priority is not valid.
+	 * @see Scheduler#setDispatchQueueCapacity(int)
+	 * @since 2.3
+	 */
+	public void setPriority(int priority) throws IllegalArgumentException {
+		if (priority < PRIORITY_LOW || priority > PRIORITY_HIGH) {
+			throw new IllegalArgumentException("Invalid priority: " + priority);
+		}
+		this.priority = priority;
+	}
+
+	/**
+	 * Returns how long the launches of this task are delayed after their
+	 * scheduled time.
+	 * 
+	 * @return The delay, in milliseconds.
+	 * @since 2.3
+	 */
+	public long getJitterOffset() {
+		return jitterOffset;
+	}
+
+	/**
+	 * <p>
+	 * Spreads the launches of this task over a time window. Every launch is
+	 * delayed by an offset within the window, computed from a hash of the
+	 * given key. Many tasks fired by the same pattern, each with its own key,
+	 * are so launched at different moments of the window instead of all at
+	 * once, while every task keeps the same offset across restarts.
+	 * </p>
+	 * <p>
+	 * The offset is added to the launch time, so a task should not be fired
+	 * again before its window has passed.
+	 * </p>
+	 * 
+	 * @param key
+	 *            A key identifying the task, stable across restarts.
+	 * @param window
+	 *            The window, in milliseconds, or 0 to launch the task on
+	 *            time.
+	 * @throws IllegalArgumentException
+	 *             If the window is negative or the key is null.
+	 * @see Scheduler#schedule(String, Task, String, long)
+	 * @since 2.3
+	 */
+	public void setJitter(String key, long window)
+			throws IllegalArgumentException {
+		if (window < 0) {
+			throw new IllegalArgumentException("Negative jitter window: "
+					+ window);
+		}
+		if (key == null) {
+			throw new IllegalArgumentException("Missing jitter key");
+		}
+		// Mixes the bits, so that similar keys land far apart.
+		int h = key.hashCode();
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		this.jitterOffset = window > 0 ? (h & 0xffffffffL) % window : 0;
+	}
+
+	/**
+	 * Returns the number of running executions of this task.
+	 * 
+	 * @return The number of running executions.
+	 * @since 2.3
+	 */
+	public int getRunningCount() {
+		return executions.get() & (QUEUED - 1);
+	}
+
+	/**
+	 * Counts a new execution of this task, if its concurrency policy allows
+	 * it. A refused launch is kept waiting under the
+	 * {@link Task#CONCURRENCY_QUEUE_ONE} policy.
+	 * 
+	 * @param force
+	 *            true to count the execution regardless of the policy.
+	 * @return true if the task can be launched.
+	 */
+	boolean acquireExecution(boolean force) {
+		int policy = concurrencyPolicy;
+		int limit = policy == CONCURRENCY_LIMIT ? maxConcurrency : 1;
+		for (;;) {
+			int state = executions.get();
+			int count = state & (QUEUED - 1);
+			if (force || policy == CONCURRENCY_ALLOW || count < limit) {
+				if (executions.compareAndSet(state, state + 1)) {
+					return true;
+				}
+			} else if (policy != CONCURRENCY_QUEUE_ONE
+					|| (state & QUEUED) != 0) {
+				return false;
+			} else if (executions.compareAndSet(state, state | QUEUED)) {
+				// Launched by the last running execution, when it ends.
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Counts the end of an execution of this task. If it was the last running
+	 * one, the waiting launch, if any, is counted in its place.
+	 * 
+	 * @return true if a waiting launch has to start now. Its execution has
+	 *         already been counted.
+	 */
+	boolean releaseExecution() {
+		for (;;) {
+			int state = executions.get();
+			if (state == (QUEUED | 1)) {
+				if (executions.compareAndSet(state, 1)) {
+					return true;
+				}
+			} else if (executions.compareAndSet(state, state - 1)) {
+				return false;
+			}
+		}
+	}
+
 	/**
 	 * <p>
 	 * Checks whether this task supports pause requests.
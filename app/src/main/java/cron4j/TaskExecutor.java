@@ -20,6 +20,11 @@ package cron4j;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * <p>
@@ -27,7 +32,10 @@ import java.util.Iterator;
  * </p>
  * <p>
  * Each time a task is launched, a new executor is spawned, executing and
- * watching the task
+ * watching the task. The task runs in a brand new thread or, if the scheduler
+ * has been given an {@link ExecutorService}, in one of its threads. If the
+ * dispatch queue of the scheduler is enabled, the task waits in the queue and
+ * then runs in one of its worker threads.
  * </p>
  * <p>
  * Alive task executors can be retrieved with the
@@ -77,10 +85,17 @@ public class TaskExecutor {
 	private long startTime = -1;
 
 	/**
-	 * The thread actually executing the task.
+	 * The thread actually executing the task, or null if the task is not
+	 * running.
 	 */
 	private Thread thread;
 
+	/**
+	 * Is this executor alive? It is from its start until the end of the task
+	 * execution, even while waiting for a thread of the executor service.
+	 */
+	private boolean alive = false;
+
 	/**
 	 * Is this executor paused now?
 	 */
@@ -92,9 +107,16 @@ public class TaskExecutor {
 	private boolean stopped = false;
 
 	/**
-	 * A lock object, for synchronization purposes.
+	 * A lock, for synchronization purposes. An explicit lock is used instead of
+	 * an object monitor, so that a task waiting while paused doesn't pin the
+	 * carrier of a virtual thread.
+	 */
+	private ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * Signalled when the executor is resumed or dies.
 	 */
-	private Object lock = new Object();
+	private Condition condition = lock.newCondition();
 
 	/**
 	 * Builds the executor.
@@ -238,13 +260,111 @@ public class TaskExecutor {
 	 *            true to spawn a daemon thread; false otherwise.
 	 */
 	void start(boolean daemon) {
-		synchronized (lock) {
-			startTime = System.currentTimeMillis();
+		start(null, daemon);
+	}
+
+	/**
+	 * Starts executing the task (spawns a secondary thread).
+	 * 
+	 * @param threadFactory
+	 *            The factory of the secondary thread, or null to build a plain
+	 *            one.
+	 * @param daemon
+	 *            true to spawn a daemon thread; false otherwise. Ignored if a
+	 *            thread factory is given, since the factory decides it.
+	 */
+	void start(ThreadFactory threadFactory, boolean daemon) {
+		lock.lock();
+		try {
+			startTime = scheduler.getClock().currentTimeMillis();
+			alive = true;
 			String name = "cron4j::scheduler[" + scheduler.getGuid() + "]::executor[" + guid + "]";
-			thread = new Thread(new Runner());
-			thread.setDaemon(daemon);
+			if (threadFactory != null) {
+				thread = threadFactory.newThread(new Runner());
+			} else {
+				thread = new Thread(new Runner());
+				thread.setDaemon(daemon);
+			}
 			thread.setName(name);
 			thread.start();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Starts executing the task within a thread of the given executor service.
+	 * 
+	 * @param executorService
+	 *            The executor service.
+	 * @throws RejectedExecutionException
+	 *             If the executor service doesn't accept the task. The
+	 *             executor must then be discarded with
+	 *             {@link TaskExecutor#discard()}.
+	 */
+	void start(ExecutorService executorService)
+			throws RejectedExecutionException {
+		lock.lock();
+		try {
+			startTime = scheduler.getClock().currentTimeMillis();
+			alive = true;
+		} finally {
+			lock.unlock();
+		}
+		// Submitted out of the lock: the executor service could run the task
+		// in the current thread.
+		executorService.execute(new Runner());
+	}
+
+	/**
+	 * Starts executing the task within a worker thread of the given dispatch
+	 * queue. If the queue is full, its overflow policy can discard this
+	 * executor or an older one, which must then be discarded with
+	 * {@link TaskExecutor#discard()}.
+	 * 
+	 * @param dispatchQueue
+	 *            The dispatch queue.
+	 * @param wait
+	 *            true to wait for room in the queue, when its overflow policy
+	 *            is {@link Scheduler#OVERFLOW_BLOCK}.
+	 * @return The executor discarded by the queue, or null.
+	 * @throws InterruptedException
+	 *             If the current thread has been interrupted while waiting for
+	 *             room in the queue. This executor is not queued.
+	 */
+	TaskExecutor enqueue(DispatchQueue dispatchQueue, boolean wait)
+			throws InterruptedException {
+		lock.lock();
+		try {
+			startTime = scheduler.getClock().currentTimeMillis();
+			alive = true;
+		} finally {
+			lock.unlock();
+		}
+		return dispatchQueue.put(this, wait);
+	}
+
+	/**
+	 * Runs the task in the current thread. Called by the worker threads of a
+	 * {@link DispatchQueue}.
+	 */
+	void runQueued() {
+		new Runner().run();
+	}
+
+	/**
+	 * Terminates an executor that will never run its task, because it has
+	 * been discarded by a {@link DispatchQueue}, it couldn't be queued or the
+	 * executor service didn't accept it.
+	 */
+	void discard() {
+		scheduler.notifyExecutorCompleted(myself);
+		lock.lock();
+		try {
+			alive = false;
+			condition.signalAll();
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -259,11 +379,14 @@ public class TaskExecutor {
 		if (!canBePaused()) {
 			throw new UnsupportedOperationException("Pause not supported");
 		}
-		synchronized (lock) {
-			if (thread != null && !paused) {
+		lock.lock();
+		try {
+			if (alive && !paused) {
 				notifyExecutionPausing();
 				paused = true;
 			}
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -271,12 +394,15 @@ public class TaskExecutor {
 	 * Resumes the execution after it has been paused.
 	 */
 	public void resume() {
-		synchronized (lock) {
-			if (thread != null && paused) {
+		lock.lock();
+		try {
+			if (alive && paused) {
 				notifyExecutionResuming();
 				paused = false;
-				lock.notifyAll();
+				condition.signalAll();
 			}
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -292,27 +418,31 @@ public class TaskExecutor {
 			throw new UnsupportedOperationException("Stop not supported");
 		}
 		boolean joinit = false;
-		synchronized (lock) {
-			if (thread != null && !stopped) {
+		lock.lock();
+		try {
+			if (alive && !stopped) {
 				stopped = true;
 				if (paused) {
 					resume();
 				}
 				notifyExecutionStopping();
-				thread.interrupt();
+				if (thread != null) {
+					thread.interrupt();
+				}
 				joinit = true;
 			}
+		} finally {
+			lock.unlock();
 		}
 		if (joinit) {
 			do {
 				try {
-					thread.join();
+					join();
 					break;
 				} catch (InterruptedException e) {
 					continue;
 				}
 			} while (true);
-			thread = null;
 		}
 	}
 
@@ -325,8 +455,13 @@ public class TaskExecutor {
 	 *             exception is thrown.
 	 */
 	public void join() throws InterruptedException {
-		if (thread != null) {
-			thread.join();
+		lock.lock();
+		try {
+			while (alive) {
+				condition.await();
+			}
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -337,10 +472,11 @@ public class TaskExecutor {
 	 * @return true if this executor is alive; false otherwise.
 	 */
 	public boolean isAlive() {
-		if (thread != null) {
-			return thread.isAlive();
-		} else {
-			return false;
+		lock.lock();
+		try {
+			return alive;
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -489,14 +625,25 @@ public class TaskExecutor {
 		 */
 		public void run() {
 			Throwable error = null;
-			startTime = System.currentTimeMillis();
+			boolean execute;
+			lock.lock();
 			try {
-				// Notify.
-				scheduler.notifyTaskLaunching(myself);
-				// Task execution.
-				task.execute(context);
-				// Succeeded.
-				scheduler.notifyTaskSucceeded(myself);
+				startTime = scheduler.getClock().currentTimeMillis();
+				thread = Thread.currentThread();
+				// Stopped while waiting for a pooled thread?
+				execute = !stopped;
+			} finally {
+				lock.unlock();
+			}
+			try {
+				if (execute) {
+					// Notify.
+					scheduler.notifyTaskLaunching(myself);
+					// Task execution.
+					task.execute(context);
+					// Succeeded.
+					scheduler.notifyTaskSucceeded(myself);
+				}
 			} catch (Throwable exception) {
 				// Failed.
 				error = exception;
@@ -504,7 +651,22 @@ public class TaskExecutor {
 			} finally {
 				// Notify.
 				notifyExecutionTerminated(error);
+				// A pooled thread must not be interrupted anymore: it could
+				// already be running another task.
+				lock.lock();
+				try {
+					thread = null;
+				} finally {
+					lock.unlock();
+				}
 				scheduler.notifyExecutorCompleted(myself);
+				lock.lock();
+				try {
+					alive = false;
+					condition.signalAll();
+				} finally {
+					lock.unlock();
+				}
 			}
 		}
 	}
@@ -537,14 +699,17 @@ public class TaskExecutor {
 		}
 
 		public void pauseIfRequested() {
-			synchronized (lock) {
+			lock.lock();
+			try {
 				if (paused) {
 					try {
-						lock.wait();
+						condition.await();
 					} catch (InterruptedException e) {
 						;
 					}
 				}
+			} finally {
+				lock.unlock();
 			}
 		}
 
@@ -0,0 +1,45 @@
+/*
+ * cron4j - A pure Java cron-like scheduler
+ * 
+ * Copyright (C) 2007-2010 Carlo Pelliccia (www.sauronsoftware.it)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version
+ * 2.1, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License 2.1 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License version 2.1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package cron4j;
+
+/**
+ * <p>
+ * Implement this interface and register your instance with
+ * {@link Scheduler#addTaskRejectionListener(TaskRejectionListener)} to be
+ * notified when a launch is discarded by the dispatch queue of the scheduler,
+ * because the queue is full and its overflow policy is
+ * {@link Scheduler#OVERFLOW_REJECT} or {@link Scheduler#OVERFLOW_DROP_OLDEST},
+ * or when the executor service of the scheduler doesn't accept a launch.
+ * </p>
+ * 
+ * @see Scheduler#setDispatchQueueCapacity(int)
+ * @since 2.3
+ */
+public interface TaskRejectionListener {
+
+	/**
+	 * This one is called by the scheduler when a launch has been discarded.
+	 * The executor has never run its task.
+	 * 
+	 * @param executor
+	 *            The discarded task executor.
+	 */
+	public void taskRejected(TaskExecutor executor);
+
+}
@@ -24,6 +24,12 @@ import java.util.ArrayList;
  * <p>
  * A table coupling tasks with scheduling patterns.
  * </p>
+ * <p>
+ * A table can be read-only, when the same instance is shared among many
+ * readers. In example, the tables returned by the collectors of the
+ * {@link Scheduler} are read-only snapshots, reused until the collected tasks
+ * change.
+ * </p>
  * 
  * @author Carlo Pelliccia
  * @since 2.0
@@ -38,12 +44,40 @@ public class TaskTable {
 	/**
 	 * Pattern list.
 	 */
-	private ArrayList patterns = new ArrayList();
+	private ArrayList patterns;
 
 	/**
 	 * Task list.
 	 */
-	private ArrayList tasks = new ArrayList();
+	private ArrayList tasks;
+
+	/**
+	 * Is this table read-only?
+	 */
+	private boolean readOnly = false;
+
+	/**
+	 * The tasks grouped by pattern, or null if not computed yet.
+	 */
+	private volatile PatternGroups patternGroups = null;
+
+	/**
+	 * Builds an empty table.
+	 */
+	public TaskTable() {
+		this(10);
+	}
+
+	/**
+	 * Builds an empty table, sized for the given number of elements.
+	 * 
+	 * @param capacity
+	 *            The expected number of elements.
+	 */
+	TaskTable(int capacity) {
+		patterns = new ArrayList(capacity);
+		tasks = new ArrayList(capacity);
+	}
 
 	/**
 	 * Adds a task and an associated scheduling pattern to the table.
@@ -52,11 +86,16 @@ public class TaskTable {
 	 *            The associated scheduling pattern.
 	 * @param task
 	 *            The task.
+	 * @throws UnsupportedOperationException
+	 *             If the table is read-only.
 	 */
-	public void add(SchedulingPattern pattern, Task task) {
+	public void add(SchedulingPattern pattern, Task task)
+			throws UnsupportedOperationException {
+		checkWritable();
 		patterns.add(pattern);
 		tasks.add(task);
 		size++;
+		patternGroups = null;
 	}
 
 	/**
@@ -105,12 +144,61 @@ public class TaskTable {
 	 *            The index of the task to remove.
 	 * @throws IndexOutOfBoundsException
 	 *             If the supplied index is not valid.
+	 * @throws UnsupportedOperationException
+	 *             If the table is read-only.
 	 * @since 2.1
 	 */
-	public void remove(int index) throws IndexOutOfBoundsException {
+	public void remove(int index) throws IndexOutOfBoundsException,
+			UnsupportedOperationException {
+		checkWritable();
 		tasks.remove(index);
 		patterns.remove(index);
 		size--;
+		patternGroups = null;
+	}
+
+	/**
+	 * Tests whether this table is read-only.
+	 * 
+	 * @return true if this table is read-only; false otherwise.
+	 * @since 2.3
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/**
+	 * Makes this table read-only. Any subsequent change will be refused.
+	 */
+	void setReadOnly() {
+		readOnly = true;
+	}
+
+	/**
+	 * Returns the tasks of this table grouped by pattern. The groups are
+	 * computed at the first call, and then reused until the table changes.
+	 * 
+	 * @return The tasks grouped by pattern.
+	 */
+	PatternGroups getPatternGroups() {
+		PatternGroups ret = patternGroups;
+		if (ret == null) {
+			ret = new PatternGroups(this);
+			patternGroups = ret;
+		}
+		return ret;
+	}
+
+	/**
+	 * Checks that this table can be changed.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             If the table is read-only.
+	 */
+	private void checkWritable() throws UnsupportedOperationException {
+		if (readOnly) {
+			throw new UnsupportedOperationException("Read-only task table");
+		}
 	}
 
 }
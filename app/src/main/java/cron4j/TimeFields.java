@@ -0,0 +1,183 @@
+/*
+ * cron4j - A pure Java cron-like scheduler
+ *
+ * Copyright (C) 2007-2010 Carlo Pelliccia (www.sauronsoftware.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version
+ * 2.1, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License 2.1 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License version 2.1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package cron4j;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * <p>
+ * An immutable decomposition of a moment into the fields checked by a
+ * {@link SchedulingPattern}, according to a time zone.
+ * </p>
+ * <p>
+ * Decomposing a moment requires a calendar, and it is far more expensive than
+ * matching a pattern. When many patterns have to be matched against the same
+ * moment, build a TimeFields instance once and pass it to
+ * {@link SchedulingPattern#match(TimeFields)}:
+ * </p>
+ * 
+ * <pre>
+ * TimeFields fields = new TimeFields(timezone, millis);
+ * for (int i = 0; i &lt; patterns.length; i++) {
+ * 	if (patterns[i].match(fields)) {
+ * 		...
+ * 	}
+ * }
+ * </pre>
+ * 
+ * @since 2.3
+ */
+public final class TimeFields {
+
+	/**
+	 * The second, from 0 to 59.
+	 */
+	final int second;
+
+	/**
+	 * The minute, from 0 to 59.
+	 */
+	final int minute;
+
+	/**
+	 * The hour of the day, from 0 to 23.
+	 */
+	final int hour;
+
+	/**
+	 * The day of the month, from 1 to 31.
+	 */
+	final int dayOfMonth;
+
+	/**
+	 * The month, from 1 (January) to 12 (December).
+	 */
+	final int month;
+
+	/**
+	 * The day of the week, from 0 (Sunday) to 6 (Saturday).
+	 */
+	final int dayOfWeek;
+
+	/**
+	 * The year.
+	 */
+	final int year;
+
+	/**
+	 * Is the year a leap year?
+	 */
+	final boolean leapYear;
+
+	/**
+	 * Decomposes a moment according to a time zone.
+	 * 
+	 * @param timezone
+	 *            The time zone.
+	 * @param millis
+	 *            The moment, as a UNIX-era millis value.
+	 */
+	public TimeFields(TimeZone timezone, long millis) {
+		GregorianCalendar gc = new GregorianCalendar(timezone);
+		gc.setTimeInMillis(millis);
+		second = gc.get(Calendar.SECOND);
+		minute = gc.get(Calendar.MINUTE);
+		hour = gc.get(Calendar.HOUR_OF_DAY);
+		dayOfMonth = gc.get(Calendar.DAY_OF_MONTH);
+		month = gc.get(Calendar.MONTH) + 1;
+		dayOfWeek = gc.get(Calendar.DAY_OF_WEEK) - 1;
+		year = gc.get(Calendar.YEAR);
+		leapYear = gc.isLeapYear(year);
+	}
+
+	/**
+	 * Returns the second, from 0 to 59.
+	 * 
+	 * @return The second.
+	 */
+	public int getSecond() {
+		return second;
+	}
+
+	/**
+	 * Returns the minute, from 0 to 59.
+	 * 
+	 * @return The minute.
+	 */
+	public int getMinute() {
+		return minute;
+	}
+
+	/**
+	 * Returns the hour of the day, from 0 to 23.
+	 * 
+	 * @return The hour of the day.
+	 */
+	public int getHour() {
+		return hour;
+	}
+
+	/**
+	 * Returns the day of the month, from 1 to 31.
+	 * 
+	 * @return The day of the month.
+	 */
+	public int getDayOfMonth() {
+		return dayOfMonth;
+	}
+
+	/**
+	 * Returns the month, from 1 (January) to 12 (December).
+	 * 
+	 * @return The month.
+	 */
+	public int getMonth() {
+		return month;
+	}
+
+	/**
+	 * Returns the day of the week, from 0 (Sunday) to 6 (Saturday).
+	 * 
+	 * @return The day of the week.
+	 */
+	public int getDayOfWeek() {
+		return dayOfWeek;
+	}
+
+	/**
+	 * Returns the year.
+	 * 
+	 * @return The year.
+	 */
+	public int getYear() {
+		return year;
+	}
+
+	/**
+	 * Tests whether the year is a leap year.
+	 * 
+	 * @return true if the year is a leap year; false otherwise.
+	 */
+	public boolean isLeapYear() {
+		return leapYear;
+	}
+
+}
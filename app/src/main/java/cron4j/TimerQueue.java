@@ -0,0 +1,77 @@
+/*
+ * cron4j - A pure Java cron-like scheduler
+ *
+ * Copyright (C) 2007-2010 Carlo Pelliccia (www.sauronsoftware.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version
+ * 2.1, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License 2.1 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License version 2.1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package cron4j;
+
+import java.util.ArrayList;
+
+/**
+ * <p>
+ * This interface describes the storage used by a {@link QueueTimerThread} to
+ * keep its tasks, ordered by their next fire time.
+ * </p>
+ * 
+ * @since 2.3
+ */
+interface TimerQueue {
+
+	/**
+	 * Adds a task to the queue. The fire time of the task must have been
+	 * already computed.
+	 * 
+	 * @param task
+	 *            The task.
+	 */
+	public void add(QueuedTask task);
+
+	/**
+	 * Removes a task from the queue. The task has already been marked as
+	 * cancelled, so implementations are free to discard it lazily.
+	 * 
+	 * @param task
+	 *            The task.
+	 */
+	public void remove(QueuedTask task);
+
+	/**
+	 * Removes every task from the queue.
+	 */
+	public void clear();
+
+	/**
+	 * Returns the time the queue has to be polled again.
+	 * 
+	 * @param now
+	 *            The current time.
+	 * @return The time the queue has to be polled again, or
+	 *         {@link Long#MAX_VALUE} if the queue is empty.
+	 */
+	public long getWakeTime(long now);
+
+	/**
+	 * Removes from the queue any task whose fire time is not after the given
+	 * time.
+	 * 
+	 * @param now
+	 *            The current time.
+	 * @param due
+	 *            The list where the removed tasks are stored, by side-effect.
+	 */
+	public void pollDue(long now, ArrayList due);
+
+}
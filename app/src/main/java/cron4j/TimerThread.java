@@ -24,12 +24,33 @@ package cron4j;
  * most of the time sleeping. It wakes up every minute and it requests to the
  * scheduler the spawning of a {@link LauncherThread}.
  * </p>
+ * <p>
+ * Ticks are scheduled against {@link Clock#nanoTime()} deadlines, one
+ * second apart, so that they don't drift under load and they aren't shaken by
+ * wall clock adjustments. The wall clock is read at every tick to find the
+ * second to check, and the deadlines are aligned again with the wall clock
+ * seconds only when they drift away by more than a couple of milliseconds. The
+ * lateness of every tick is measured and reported to the scheduler.
+ * </p>
+ * <p>
+ * The thread tracks the last second it has checked. If it wakes up late,
+ * because of a long pause or because the system clock jumps ahead, the next
+ * launcher is told about the skipped seconds, so that it can recover the
+ * missed launches. If the system clock goes back, no second is checked twice
+ * unless the jump is longer than a second.
+ * </p>
  *
  * @author Carlo Pelliccia
  * @since 2.0
  */
 class TimerThread extends Thread {
 
+    /**
+     * How far, in milliseconds, the ticks can drift from the wall clock
+     * seconds.
+     */
+    private static final long TOLERANCE = 2;
+
     /**
      * A GUID for this object.
      */
@@ -40,6 +61,11 @@ class TimerThread extends Thread {
      */
     private Scheduler scheduler;
 
+    /**
+     * The clock of the owner scheduler.
+     */
+    private Clock clock;
+
     /**
      * Builds the timer thread.
      *
@@ -47,6 +73,7 @@ class TimerThread extends Thread {
      */
     public TimerThread(Scheduler scheduler) {
         this.scheduler = scheduler;
+        this.clock = scheduler.getClock();
         // Thread name.
         String name = "cron4j::scheduler[" + scheduler.getGuid() + "]::timer[" + guid + "]";
         setName(name);
@@ -62,25 +89,19 @@ class TimerThread extends Thread {
     }
 
     /**
-     * It has been reported that the {@link Thread#sleep(long)} method sometimes
-     * exits before the requested time has passed. This one offers an
-     * alternative that sometimes could sleep a few millis more than requested,
-     * but never less.
+     * Sleeps until the given deadline. A wait can end before the requested
+     * time has passed, so the deadline is checked again after every wait.
      *
-     * @param millis The length of time to sleep in milliseconds.
+     * @param deadline The deadline, as a {@link Clock#nanoTime()} value.
      * @throws InterruptedException If another thread has interrupted the current thread. The
      *                              <i>interrupted status</i> of the current thread is cleared
      *                              when this exception is thrown.
-     * @see Thread#sleep(long)
      */
-    private void safeSleep(long millis) throws InterruptedException {
-        long done = 0;
-        do {
-            long before = System.currentTimeMillis();
-            sleep(millis - done);
-            long after = System.currentTimeMillis();
-            done += (after - before);
-        } while (done < millis);
+    private synchronized void sleepUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - clock.nanoTime()) > 0) {
+            clock.waitFor(this, remaining);
+        }
     }
 
     /**
@@ -88,27 +109,45 @@ class TimerThread extends Thread {
      */
     public void run() {
         // What time is it?
-        long millis = System.currentTimeMillis();
-        // Calculating next minute.
-        long nextMinute = ((millis / 1000) + 1) * 1000;
+        long millis = clock.currentTimeMillis();
+        // The first deadline is the beginning of the next second.
+        long deadline = clock.nanoTime() + (1000 - millis % 1000) * 1000000L;
+        // The last checked second.
+        long lastSecond = (millis / 1000) * 1000;
         // Work until the scheduler is started.
         for (; ; ) {
-            // Coffee break 'till next minute comes!
-            long sleepTime = (nextMinute - System.currentTimeMillis());
-            if (sleepTime > 0) {
-                try {
-                    safeSleep(sleepTime);
-                } catch (InterruptedException e) {
-                    // Must exit!
-                    break;
+            // Coffee break 'till the deadline comes!
+            try {
+                sleepUntil(deadline);
+            } catch (InterruptedException e) {
+                // Must exit!
+                break;
+            }
+            long lateness = clock.nanoTime() - deadline;
+            scheduler.notifyTickLateness(lateness);
+            // What time is it? A tick a little early counts for its second.
+            millis = clock.currentTimeMillis();
+            long second = ((millis + TOLERANCE) / 1000) * 1000;
+            boolean checked = second == lastSecond;
+            if (!checked) {
+                if (second < lastSecond) {
+                    // The clock went back: no gap to recover.
+                    lastSecond = second - 1000;
                 }
+                // Launching the launching thread!
+                scheduler.spawnLauncher(lastSecond, second, true);
+                lastSecond = second;
+            }
+            // Next deadline. The ticks keep their pace unless they drift
+            // away from the wall clock seconds, because of a long pause or
+            // of a wall clock change.
+            long drift = (millis - second) - lateness / 1000000;
+            if (!checked && drift <= TOLERANCE && drift >= -TOLERANCE) {
+                deadline += 1000000000L;
+            } else {
+                millis = clock.currentTimeMillis();
+                deadline = clock.nanoTime() + (1000 - millis % 1000) * 1000000L;
             }
-            // What time is it?
-            millis = System.currentTimeMillis();
-            // Launching the launching thread!
-            scheduler.spawnLauncher(millis);
-            // Calculating next minute.
-            nextMinute = ((millis / 1000) + 1) * 1000;
         }
         // Discard scheduler reference.
         scheduler = null;
@@ -0,0 +1,237 @@
+/*
+ * cron4j - A pure Java cron-like scheduler
+ *
+ * Copyright (C) 2007-2010 Carlo Pelliccia (www.sauronsoftware.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version
+ * 2.1, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License 2.1 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License version 2.1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package cron4j;
+
+import java.util.ArrayList;
+
+/**
+ * <p>
+ * A {@link TimerQueue} implementation based on a hierarchical timing wheel,
+ * with a one second resolution. Adding and expiring a task costs O(1),
+ * regardless of the number of queued tasks.
+ * </p>
+ * <p>
+ * The wheel is made of four levels: 60 one-second slots, 60 one-minute
+ * slots, 24 one-hour slots and {@link TimingWheel#DAYS} one-day slots. A task
+ * is stored in the finest level able to hold it. Every time the wheel enters
+ * a new minute, hour or day, the tasks in the corresponding slot are cascaded
+ * to the finer levels. Tasks due farther than the day level are kept in an
+ * overflow list, checked once a day.
+ * </p>
+ * <p>
+ * Removed tasks are only marked as cancelled, and they are discarded when the
+ * wheel reaches their slot.
+ * </p>
+ * 
+ * @since 2.3
+ */
+class TimingWheel implements TimerQueue {
+
+	/**
+	 * Slots in the day level.
+	 */
+	private static final int DAYS = 512;
+
+	/**
+	 * Slot sizes, in seconds, for each level.
+	 */
+	private static final long[] UNITS = { 1, 60, 3600, 86400 };
+
+	/**
+	 * Slot counts for each level.
+	 */
+	private static final int[] SIZES = { 60, 60, 24, DAYS };
+
+	/**
+	 * The levels of the wheel. Each slot is an {@link ArrayList} of
+	 * {@link QueuedTask}s, created when needed.
+	 */
+	private ArrayList[][] levels = new ArrayList[SIZES.length][];
+
+	/**
+	 * How many tasks are stored in each level.
+	 */
+	private int[] counts = new int[SIZES.length];
+
+	/**
+	 * Tasks due farther than the last level can hold.
+	 */
+	private ArrayList overflow = new ArrayList();
+
+	/**
+	 * Tasks already due when they have been added.
+	 */
+	private ArrayList expired = new ArrayList();
+
+	/**
+	 * The last second processed by the wheel, as a UNIX-era seconds value.
+	 */
+	private long current;
+
+	/**
+	 * Builds the wheel.
+	 * 
+	 * @param now
+	 *            The current time, as a UNIX-era millis value.
+	 */
+	public TimingWheel(long now) {
+		for (int i = 0; i < SIZES.length; i++) {
+			levels[i] = new ArrayList[SIZES[i]];
+		}
+		current = now / 1000;
+	}
+
+	public void add(QueuedTask task) {
+		long second = task.time / 1000;
+		long delta = second - current;
+		if (delta <= 0) {
+			expired.add(task);
+			return;
+		}
+		for (int i = 0; i < SIZES.length; i++) {
+			if (delta < UNITS[i] * SIZES[i]) {
+				int index = (int) ((second / UNITS[i]) % SIZES[i]);
+				ArrayList slot = levels[i][index];
+				if (slot == null) {
+					slot = new ArrayList();
+					levels[i][index] = slot;
+				}
+				slot.add(task);
+				counts[i]++;
+				return;
+			}
+		}
+		overflow.add(task);
+	}
+
+	public void remove(QueuedTask task) {
+		// Lazily discarded when its slot is reached.
+	}
+
+	public void clear() {
+		for (int i = 0; i < SIZES.length; i++) {
+			for (int j = 0; j < SIZES[i]; j++) {
+				levels[i][j] = null;
+			}
+			counts[i] = 0;
+		}
+		overflow.clear();
+		expired.clear();
+	}
+
+	public long getWakeTime(long now) {
+		if (expired.size() > 0) {
+			return now;
+		}
+		long ret = Long.MAX_VALUE;
+		// A task in the seconds level?
+		if (counts[0] > 0) {
+			for (long s = current + 1; s <= current + SIZES[0]; s++) {
+				ArrayList slot = levels[0][(int) (s % SIZES[0])];
+				if (slot != null && slot.size() > 0) {
+					ret = s * 1000;
+					break;
+				}
+			}
+		}
+		// A cascade can bring an earlier task in the seconds level.
+		for (int i = 1; i < SIZES.length; i++) {
+			if (counts[i] > 0) {
+				ret = Math.min(ret, ((current / UNITS[i]) + 1) * UNITS[i] * 1000);
+			}
+		}
+		if (overflow.size() > 0) {
+			ret = Math.min(ret, ((current / UNITS[3]) + 1) * UNITS[3] * 1000);
+		}
+		return ret;
+	}
+
+	public void pollDue(long now, ArrayList due) {
+		drain(expired, due);
+		long second = now / 1000;
+		while (current < second) {
+			current++;
+			// Cascades the coarser levels first.
+			if (current % UNITS[3] == 0) {
+				ArrayList aux = overflow;
+				overflow = new ArrayList();
+				cascade(aux, due);
+			}
+			for (int i = SIZES.length - 1; i > 0; i--) {
+				if (current % UNITS[i] == 0) {
+					int index = (int) ((current / UNITS[i]) % SIZES[i]);
+					ArrayList slot = levels[i][index];
+					if (slot != null) {
+						levels[i][index] = null;
+						counts[i] -= slot.size();
+						cascade(slot, due);
+					}
+				}
+			}
+			// Expires the current second.
+			int index = (int) (current % SIZES[0]);
+			ArrayList slot = levels[0][index];
+			if (slot != null) {
+				levels[0][index] = null;
+				counts[0] -= slot.size();
+				drain(slot, due);
+			}
+		}
+	}
+
+	/**
+	 * Adds again to the wheel the tasks of a slot.
+	 * 
+	 * @param slot
+	 *            The slot.
+	 * @param due
+	 *            The list of the due tasks.
+	 */
+	private void cascade(ArrayList slot, ArrayList due) {
+		int size = slot.size();
+		for (int i = 0; i < size; i++) {
+			QueuedTask task = (QueuedTask) slot.get(i);
+			if (!task.cancelled) {
+				add(task);
+			}
+		}
+		drain(expired, due);
+	}
+
+	/**
+	 * Moves the live tasks of a slot in the list of the due tasks, and
+	 * empties the slot.
+	 * 
+	 * @param slot
+	 *            The slot.
+	 * @param due
+	 *            The list of the due tasks.
+	 */
+	private void drain(ArrayList slot, ArrayList due) {
+		int size = slot.size();
+		for (int i = 0; i < size; i++) {
+			QueuedTask task = (QueuedTask) slot.get(i);
+			if (!task.cancelled) {
+				due.add(task);
+			}
+		}
+		slot.clear();
+	}
+
+}
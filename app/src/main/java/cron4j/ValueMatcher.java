@@ -38,4 +38,13 @@ interface ValueMatcher {
 	 */
 	public boolean match(int value);
 
+	/**
+	 * Returns the accepted values as a bit mask, in which bit <em>n</em> is set
+	 * if the value <em>n</em> is accepted.
+	 * 
+	 * @return The accepted values as a bit mask.
+	 * @since 2.3
+	 */
+	public long getMask();
+
 }
@@ -0,0 +1,341 @@
+/*
+ * cron4j - A pure Java cron-like scheduler
+ * 
+ * Copyright (C) 2007-2010 Carlo Pelliccia (www.sauronsoftware.it)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version
+ * 2.1, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License 2.1 for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License version 2.1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package cron4j;
+
+import java.util.ArrayList;
+
+/**
+ * <p>
+ * A {@link Clock} whose time moves only when the {@link #advance(long)} and
+ * {@link #advanceTo(long)} methods are called. A {@link Scheduler} working
+ * with a virtual clock can be run through days or years of simulated time in a
+ * few seconds, in example to check that its tasks are launched the expected
+ * number of times:
+ * </p>
+ * 
+ * <pre>
+ * VirtualClock clock = new VirtualClock(start);
+ * Scheduler scheduler = new Scheduler();
+ * scheduler.setClock(clock);
+ * scheduler.setEngine(Scheduler.QUEUE_ENGINE);
+ * scheduler.schedule(&quot;0 0 * * * *&quot;, task);
+ * scheduler.start();
+ * clock.advance(365L * 24 * 60 * 60 * 1000);
+ * scheduler.stop();
+ * </pre>
+ * 
+ * <p>
+ * Time moves forward one deadline at a time. Every thread waiting on the clock
+ * is woken up when its deadline is reached, and the clock doesn't move any
+ * further until that thread waits again or dies, so that no tick is ever
+ * skipped. The same goes for the threads woken up with
+ * {@link #wakeUp(Object)}, and for the launcher threads started by the
+ * scheduler meanwhile, which are waited for until they die. Launched tasks run
+ * in their own threads and are not waited for: they can observe a later time
+ * than the one they were launched at.
+ * </p>
+ * <p>
+ * The {@link Scheduler#QUEUE_ENGINE} and {@link Scheduler#WHEEL_ENGINE}
+ * engines only wake up when a task is due, so they run through simulated time
+ * much faster than the {@link Scheduler#POLLING_ENGINE}, which wakes up every
+ * second.
+ * </p>
+ * 
+ * @since 2.3
+ */
+public class VirtualClock implements Clock {
+
+	/**
+	 * The wall clock time of the clock creation.
+	 */
+	private final long origin;
+
+	/**
+	 * The nanoseconds elapsed since the clock creation.
+	 */
+	private long time = 0;
+
+	/**
+	 * The waiting threads.
+	 */
+	private ArrayList waiters = new ArrayList();
+
+	/**
+	 * The woken threads the clock is waiting for.
+	 */
+	private ArrayList woken = new ArrayList();
+
+	/**
+	 * The running threads the clock is waiting to end.
+	 */
+	private ArrayList tracked = new ArrayList();
+
+	/**
+	 * Internal lock, used to synchronize the clock state.
+	 */
+	private Object lock = new Object();
+
+	/**
+	 * Builds a virtual clock starting at the current system time.
+	 */
+	public VirtualClock() {
+		this(System.currentTimeMillis());
+	}
+
+	/**
+	 * Builds a virtual clock starting at the given time.
+	 * 
+	 * @param startTimeInMillis
+	 *            The start time.
+	 */
+	public VirtualClock(long startTimeInMillis) {
+		this.origin = startTimeInMillis;
+	}
+
+	public long currentTimeMillis() {
+		synchronized (lock) {
+			return origin + time / 1000000;
+		}
+	}
+
+	public long nanoTime() {
+		synchronized (lock) {
+			return time;
+		}
+	}
+
+	public void waitFor(Object monitor, long nanos)
+			throws InterruptedException {
+		if (nanos <= 0) {
+			return;
+		}
+		Waiter waiter;
+		synchronized (lock) {
+			long deadline = nanos > Long.MAX_VALUE - time ? Long.MAX_VALUE
+					: time + nanos;
+			waiter = new Waiter(monitor, Thread.currentThread(), deadline);
+			waiters.add(waiter);
+			lock.notifyAll();
+		}
+		// The monitor is owned until wait() releases it, so the advancing
+		// thread can't notify it too early.
+		try {
+			monitor.wait();
+		} finally {
+			synchronized (lock) {
+				waiters.remove(waiter);
+				lock.notifyAll();
+			}
+		}
+	}
+
+	public void wakeUp(Object monitor) {
+		synchronized (lock) {
+			int size = waiters.size();
+			for (int i = 0; i < size; i++) {
+				Waiter waiter = (Waiter) waiters.get(i);
+				if (waiter.monitor == monitor && !waiter.fired) {
+					waiter.fired = true;
+					woken.add(waiter.thread);
+				}
+			}
+		}
+		monitor.notifyAll();
+	}
+
+	/**
+	 * Moves the clock forward, waking up the threads whose deadlines are
+	 * reached. It returns when the clock has reached the new time and every
+	 * woken thread is waiting again. It must not be called by a thread
+	 * waiting on this clock.
+	 * 
+	 * @param millis
+	 *            How far to move the clock, in milliseconds.
+	 * @throws InterruptedException
+	 *             If the current thread has been interrupted.
+	 */
+	public void advance(long millis) throws InterruptedException {
+		if (millis < 0) {
+			throw new IllegalArgumentException("Negative advance: " + millis);
+		}
+		long target;
+		synchronized (lock) {
+			target = time + millis * 1000000;
+		}
+		advanceNanos(target);
+	}
+
+	/**
+	 * Moves the clock forward to the given time, waking up the threads whose
+	 * deadlines are reached. It does nothing if the clock is already past the
+	 * given time. It must not be called by a thread waiting on this clock.
+	 * 
+	 * @param timeInMillis
+	 *            The new time.
+	 * @throws InterruptedException
+	 *             If the current thread has been interrupted.
+	 */
+	public void advanceTo(long timeInMillis) throws InterruptedException {
+		advanceNanos((timeInMillis - origin) * 1000000);
+	}
+
+	/**
+	 * Moves the clock forward, one deadline at a time.
+	 * 
+	 * @param target
+	 *            The new time, in nanoseconds since the clock creation.
+	 * @throws InterruptedException
+	 *             If the current thread has been interrupted.
+	 */
+	private void advanceNanos(long target) throws InterruptedException {
+		for (;;) {
+			Waiter next = null;
+			Thread running = null;
+			synchronized (lock) {
+				// Waits for the woken threads to wait again or die.
+				while (woken.size() > 0) {
+					Thread thread = (Thread) woken.get(0);
+					if (thread.isAlive() && !isWaiting(thread)) {
+						lock.wait(10);
+					} else {
+						woken.remove(0);
+					}
+				}
+				if (tracked.size() > 0) {
+					running = (Thread) tracked.remove(0);
+				} else {
+					int size = waiters.size();
+					for (int i = 0; i < size; i++) {
+						Waiter waiter = (Waiter) waiters.get(i);
+						if (!waiter.fired && waiter.deadline <= target
+								&& (next == null
+										|| waiter.deadline < next.deadline)) {
+							next = waiter;
+						}
+					}
+					if (next == null) {
+						if (target > time) {
+							time = target;
+						}
+						return;
+					}
+					if (next.deadline > time) {
+						time = next.deadline;
+					}
+					next.fired = true;
+					woken.add(next.thread);
+				}
+			}
+			if (running != null) {
+				// Joined out of the lock: it could wake up other threads
+				// before ending.
+				running.join();
+				continue;
+			}
+			synchronized (next.monitor) {
+				next.monitor.notifyAll();
+			}
+		}
+	}
+
+	public void awaitWaiting(Thread thread) {
+		boolean interrupted = false;
+		synchronized (lock) {
+			while (thread.isAlive() && !isWaiting(thread)) {
+				try {
+					lock.wait(10);
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public void track(Thread thread) {
+		synchronized (lock) {
+			tracked.add(thread);
+		}
+	}
+
+	/**
+	 * Tests if a thread is waiting on the clock. Call it while holding the
+	 * clock lock.
+	 * 
+	 * @param thread
+	 *            The thread.
+	 * @return true if the thread is waiting for a deadline not yet reached.
+	 */
+	private boolean isWaiting(Thread thread) {
+		int size = waiters.size();
+		for (int i = 0; i < size; i++) {
+			Waiter waiter = (Waiter) waiters.get(i);
+			if (waiter.thread == thread && !waiter.fired) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A thread waiting on the clock.
+	 */
+	private static class Waiter {
+
+		/**
+		 * The monitor the thread is waiting on.
+		 */
+		private final Object monitor;
+
+		/**
+		 * The waiting thread.
+		 */
+		private final Thread thread;
+
+		/**
+		 * The deadline, in nanoseconds since the clock creation.
+		 */
+		private final long deadline;
+
+		/**
+		 * true if the deadline has been reached and the thread woken up.
+		 */
+		private boolean fired = false;
+
+		/**
+		 * Builds the waiter.
+		 * 
+		 * @param monitor
+		 *            The monitor the thread is waiting on.
+		 * @param thread
+		 *            The waiting thread.
+		 * @param deadline
+		 *            The deadline.
+		 */
+		public Waiter(Object monitor, Thread thread, long deadline) {
+			this.monitor = monitor;
+			this.thread = thread;
+			this.deadline = deadline;
+		}
+
+	}
+
+}
@@ -0,0 +1,84 @@
+package cron4j;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares the single pass parsing of the crontab lines with the former
+ * detection of the pattern, which validated every prefix of the line, from
+ * the longest one. Run only when the <em>cron4j.benchmark</em> system
+ * property is true.
+ */
+public class CronParserBenchmark {
+
+	@Before
+	public void enabled() {
+		assumeTrue(Boolean.getBoolean("cron4j.benchmark"));
+	}
+
+	@Test
+	public void crontab50k() throws Exception {
+		String[] lines = new String[50000];
+		for (int i = 0; i < lines.length; i++) {
+			lines[i] = (i % 60) + " " + ((i / 60) % 60)
+					+ " * * * * java:com.example.Job#run --id " + i;
+		}
+		compare("50000 lines", lines);
+	}
+
+	@Test
+	public void longLines() throws Exception {
+		StringBuffer arg = new StringBuffer();
+		for (int i = 0; i < 2000; i++) {
+			arg.append('x');
+		}
+		String[] lines = new String[100];
+		for (int i = 0; i < lines.length; i++) {
+			lines[i] = "*/5 * * * * * echo " + i + arg;
+		}
+		compare("100 lines of 2k characters", lines);
+	}
+
+	private static void compare(String name, String[] lines) throws Exception {
+		long[] before = new long[2];
+		long[] after = new long[2];
+		// Warm up, then measure.
+		for (int round = 0; round < 2; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < lines.length; i++) {
+				assertNotNull(formerPattern(lines[i]));
+			}
+			before[round] = (System.nanoTime() - start) / 1000000;
+			TaskTable table = new TaskTable();
+			start = System.nanoTime();
+			for (int i = 0; i < lines.length; i++) {
+				CronParser.parseLine(table, lines[i]);
+			}
+			after[round] = (System.nanoTime() - start) / 1000000;
+			assertEquals(lines.length, table.size());
+		}
+		System.out.println("CronParser, " + name + ": former pattern detection "
+				+ before[1] + " ms, whole single pass parsing " + after[1]
+				+ " ms");
+		assertTrue(after[1] < before[1]);
+	}
+
+	/**
+	 * The former pattern detection of {@link CronParser#parseLine(TaskTable,
+	 * String)}.
+	 */
+	private static SchedulingPattern formerPattern(String line) {
+		line = line.trim();
+		for (int i = line.length(); i >= 0; i--) {
+			String aux = line.substring(0, i);
+			if (SchedulingPattern.validate(aux)) {
+				return SchedulingPattern.valueOf(aux);
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,94 @@
+package cron4j;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how {@link CronParser} splits the lines, and how fast it does. See
+ * {@link CronParserBenchmark} for a comparison with the former parsing.
+ */
+public class CronParserTest {
+
+	@Test
+	public void parsesPatternAndCommand() throws Exception {
+		TaskTable table = new TaskTable();
+		CronParser.parseLine(table, "  0 0 * * * *\tls -l \"a b\"  ");
+		assertEquals(1, table.size());
+		assertEquals("0 0 * * * *", table.getSchedulingPattern(0).toString());
+		String[] command = ((ProcessTask) table.getTask(0)).getCommand();
+		assertArrayEquals(new String[] { "ls", "-l", "a b" }, command);
+	}
+
+	@Test
+	public void parsesJoinedPatterns() throws Exception {
+		TaskTable table = new TaskTable();
+		CronParser.parseLine(table, "0 0 * * * * | 30 12 * * 1-5 * ls");
+		CronParser.parseLine(table, "0 0 * * * *|30 12 * * 1-5 * ls");
+		assertEquals(2, table.size());
+		for (int i = 0; i < 2; i++) {
+			assertEquals("ls", ((ProcessTask) table.getTask(i)).getCommand()[0]);
+		}
+		assertEquals("0 0 * * * *|30 12 * * 1-5 *", table
+				.getSchedulingPattern(0).toString());
+		assertEquals(table.getSchedulingPattern(0).toString(), table
+				.getSchedulingPattern(1).toString());
+	}
+
+	@Test
+	public void skipsCommentsAndBlankLines() throws Exception {
+		TaskTable table = new TaskTable();
+		CronParser.parseLine(table, "   ");
+		CronParser.parseLine(table, "# 0 0 * * * * ls");
+		assertEquals(0, table.size());
+	}
+
+	@Test
+	public void rejectsIncompleteLines() {
+		String[] lines = { "0 0 * * * ls", "0 0 * * * *", "0 0 * * * * |",
+				"0 0 * * * * | 0 * * ls" };
+		for (int i = 0; i < lines.length; i++) {
+			try {
+				CronParser.parseLine(new TaskTable(), lines[i]);
+				fail("Parsed: " + lines[i]);
+			} catch (Exception e) {
+				// Expected.
+			}
+		}
+	}
+
+	@Test
+	public void parsesLongLineInLinearTime() throws Exception {
+		StringBuffer arg = new StringBuffer();
+		for (int i = 0; i < 200000; i++) {
+			arg.append('x');
+		}
+		TaskTable table = new TaskTable();
+		long start = System.nanoTime();
+		CronParser.parseLine(table, "*/5 * * * * * echo " + arg);
+		long elapsed = (System.nanoTime() - start) / 1000000;
+		assertEquals(200000, ((ProcessTask) table.getTask(0)).getCommand()[1]
+				.length());
+		assertTrue("Took " + elapsed + " ms", elapsed < 1000);
+	}
+
+	@Test
+	public void parsesLargeCrontab() throws Exception {
+		StringBuffer crontab = new StringBuffer();
+		for (int i = 0; i < 50000; i++) {
+			crontab.append(i % 60).append(' ').append((i / 60) % 60)
+					.append(" * * * * java:Job#run ").append(i).append('\n');
+		}
+		long start = System.nanoTime();
+		TaskTable table = CronParser.parse(new StringReader(crontab
+				.toString()));
+		long elapsed = (System.nanoTime() - start) / 1000000;
+		assertEquals(50000, table.size());
+		assertEquals("19 53 * * * *", table.getSchedulingPattern(49999)
+				.toString());
+		assertTrue("Took " + elapsed + " ms", elapsed < 5000);
+	}
+
+}
@@ -0,0 +1,152 @@
+package cron4j;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares the polling, queue and wheel engines at 10k, 100k and 1M tasks:
+ * the cost of running through an hour of virtual time, and the fire latency
+ * on the system clock. Run only when the <em>cron4j.benchmark</em> system
+ * property is true.
+ */
+public class EngineBenchmark {
+
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+	private static final int[] ENGINES = { Scheduler.POLLING_ENGINE,
+			Scheduler.QUEUE_ENGINE, Scheduler.WHEEL_ENGINE };
+
+	/**
+	 * 2026-01-01 00:00:00 UTC.
+	 */
+	private static final long START = 1767225600000L;
+
+	/**
+	 * The virtual time run through by every engine.
+	 */
+	private static final long SPAN = 3600000L;
+
+	@Before
+	public void enabled() {
+		assumeTrue(Boolean.getBoolean("cron4j.benchmark"));
+	}
+
+	@Test
+	public void tasks10k() throws Exception {
+		run(10000);
+	}
+
+	@Test
+	public void tasks100k() throws Exception {
+		run(100000);
+	}
+
+	@Test
+	public void tasks1m() throws Exception {
+		run(1000000);
+	}
+
+	private static void run(int tasks) throws Exception {
+		// Daily patterns, 100 tasks for each of them.
+		Random random = new Random(2);
+		String[] patterns = new String[tasks / 100];
+		for (int i = 0; i < patterns.length; i++) {
+			patterns[i] = random.nextInt(60) + " " + random.nextInt(60) + " "
+					+ random.nextInt(24) + " * * *";
+		}
+		long[] buffer = new long[2];
+		int expected = 0;
+		for (int i = 0; i < patterns.length; i++) {
+			Predictor predictor = new Predictor(patterns[i], START);
+			predictor.setTimeZone(UTC);
+			expected += 100 * predictor.fillMatchingTimes(START,
+					START + SPAN, buffer);
+		}
+		for (int i = 0; i < ENGINES.length; i++) {
+			long cost = runVirtual(ENGINES[i], patterns, tasks, expected);
+			long lateness = runReal(ENGINES[i], patterns, tasks);
+			System.out.println("Engine " + ENGINES[i] + ", " + tasks
+					+ " tasks: " + (cost * 1000 / (SPAN / 1000))
+					+ " us per virtual second, max fire latency " + lateness
+					+ " ms");
+			assertTrue(lateness < 1000);
+		}
+	}
+
+	/**
+	 * Runs an engine through an hour of virtual time.
+	 *
+	 * @return The elapsed time, in milliseconds.
+	 */
+	private static long runVirtual(int engine, String[] patterns, int tasks,
+			int expected) throws Exception {
+		VirtualClock clock = new VirtualClock(START);
+		Scheduler scheduler = new Scheduler();
+		scheduler.setClock(clock);
+		scheduler.setEngine(engine);
+		scheduler.setTimeZone(UTC);
+		final AtomicInteger launches = new AtomicInteger();
+		Runnable runnable = new Runnable() {
+			public void run() {
+				launches.incrementAndGet();
+			}
+		};
+		for (int i = 0; i < tasks; i++) {
+			scheduler.schedule(patterns[i % patterns.length], runnable);
+		}
+		scheduler.start();
+		long start = System.nanoTime();
+		clock.advance(SPAN);
+		long ret = (System.nanoTime() - start) / 1000000;
+		scheduler.stop();
+		assertEquals(expected, launches.get());
+		return ret;
+	}
+
+	/**
+	 * Runs an engine for a few seconds on the system clock, along with a task
+	 * launched every second.
+	 *
+	 * @return The greatest delay of the every second task, in milliseconds.
+	 */
+	private static long runReal(int engine, String[] patterns, int tasks)
+			throws Exception {
+		Scheduler scheduler = new Scheduler();
+		scheduler.setEngine(engine);
+		Runnable runnable = new Runnable() {
+			public void run() {
+			}
+		};
+		for (int i = 0; i < tasks; i++) {
+			scheduler.schedule(patterns[i % patterns.length], runnable);
+		}
+		final AtomicInteger fires = new AtomicInteger();
+		final AtomicLong lateness = new AtomicLong();
+		scheduler.schedule("* * * * * *", new Runnable() {
+			public void run() {
+				long late = System.currentTimeMillis() % 1000;
+				fires.incrementAndGet();
+				for (;;) {
+					long max = lateness.get();
+					if (late <= max || lateness.compareAndSet(max, late)) {
+						break;
+					}
+				}
+			}
+		});
+		scheduler.start();
+		Thread.sleep(5000);
+		scheduler.stop();
+		assertTrue(fires.get() >= 3);
+		return lateness.get();
+	}
+
+}
@@ -0,0 +1,98 @@
+package cron4j;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the polling, queue and wheel engines: they must launch the same
+ * tasks, and on time. See {@link EngineBenchmark} for their costs.
+ */
+public class EngineComparisonTest {
+
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+	private static final int[] ENGINES = { Scheduler.POLLING_ENGINE,
+			Scheduler.QUEUE_ENGINE, Scheduler.WHEEL_ENGINE };
+
+	/**
+	 * 2026-01-01 00:00:00 UTC.
+	 */
+	private static final long START = 1767225600000L;
+
+	@Test
+	public void enginesLaunchTheSameTasks() throws Exception {
+		TaskTable table = PatternGroupsTest.randomTable(new Random(2), 500);
+		String[] patterns = new String[table.size()];
+		for (int i = 0; i < patterns.length; i++) {
+			patterns[i] = table.getSchedulingPattern(i).toString();
+		}
+		long span = 2 * 3600000L;
+		int[][] counts = new int[ENGINES.length][];
+		for (int i = 0; i < ENGINES.length; i++) {
+			VirtualClock clock = new VirtualClock(START);
+			Scheduler scheduler = new Scheduler();
+			scheduler.setClock(clock);
+			scheduler.setEngine(ENGINES[i]);
+			scheduler.setTimeZone(UTC);
+			scheduler.setThreadPoolSize(2);
+			counts[i] = schedule(scheduler, patterns);
+			scheduler.start();
+			clock.advance(span);
+			scheduler.stop();
+		}
+		long[] buffer = new long[(int) (span / 1000)];
+		for (int j = 0; j < patterns.length; j++) {
+			Predictor predictor = new Predictor(patterns[j], START);
+			predictor.setTimeZone(UTC);
+			int expected = predictor.fillMatchingTimes(START, START + span,
+					buffer);
+			for (int i = 0; i < ENGINES.length; i++) {
+				assertEquals("engine " + ENGINES[i] + ", " + patterns[j],
+						expected, counts[i][j]);
+			}
+		}
+	}
+
+	@Test
+	public void enginesFireOnTime() throws Exception {
+		for (int i = 0; i < ENGINES.length; i++) {
+			Scheduler scheduler = new Scheduler();
+			scheduler.setEngine(ENGINES[i]);
+			final long[] lateness = new long[2];
+			scheduler.schedule("* * * * * *", new Runnable() {
+				public void run() {
+					long late = System.currentTimeMillis() % 1000;
+					synchronized (lateness) {
+						lateness[0]++;
+						lateness[1] = Math.max(lateness[1], late);
+					}
+				}
+			});
+			scheduler.start();
+			Thread.sleep(3500);
+			scheduler.stop();
+			assertTrue(lateness[0] >= 2);
+			assertTrue(lateness[1] < 500);
+		}
+	}
+
+	private static int[] schedule(Scheduler scheduler, String[] patterns) {
+		final int[] counts = new int[patterns.length];
+		for (int i = 0; i < patterns.length; i++) {
+			final int index = i;
+			scheduler.schedule(patterns[i], new Runnable() {
+				public void run() {
+					synchronized (counts) {
+						counts[index]++;
+					}
+				}
+			});
+		}
+		return counts;
+	}
+
+}
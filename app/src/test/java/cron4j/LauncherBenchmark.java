@@ -0,0 +1,135 @@
+package cron4j;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares the cost of a launcher tick: the per-task loop of the former
+ * {@link LauncherThread}, the evaluation of every distinct pattern once, and
+ * the candidate index of {@link PatternGroups}. Run only when the
+ * <em>cron4j.benchmark</em> system property is true.
+ */
+public class LauncherBenchmark {
+
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+	/**
+	 * 2026-01-01 00:00:00 UTC.
+	 */
+	private static final long START = 1767225600000L;
+
+	/**
+	 * How many ticks are measured.
+	 */
+	private static final int TICKS = 600;
+
+	@Before
+	public void enabled() {
+		assumeTrue(Boolean.getBoolean("cron4j.benchmark"));
+	}
+
+	@Test
+	public void tick10k() {
+		run(10000);
+	}
+
+	@Test
+	public void tick100k() {
+		run(100000);
+	}
+
+	private static void run(int tasks) {
+		// 100 tasks for every distinct pattern.
+		TaskTable distinct = PatternGroupsTest.randomTable(new Random(15),
+				tasks / 100);
+		TaskTable table = new TaskTable();
+		for (int i = 0; i < tasks; i++) {
+			table.add(distinct.getSchedulingPattern(i % distinct.size()),
+					distinct.getTask(i % distinct.size()));
+		}
+		PatternGroups groups = new PatternGroups(table);
+		long[] perTask = new long[2];
+		long[] perPattern = new long[2];
+		long[] indexed = new long[2];
+		// Warm up, then measure.
+		for (int round = 0; round < 2; round++) {
+			perTask[round] = perTaskLoop(table);
+			perPattern[round] = perPatternLoop(groups);
+			indexed[round] = indexedLoop(groups);
+		}
+		System.out.println("Launcher tick, " + tasks + " tasks, "
+				+ groups.size() + " patterns: per task "
+				+ (perTask[1] / TICKS) + " ns, per pattern "
+				+ (perPattern[1] / TICKS) + " ns, indexed "
+				+ (indexed[1] / TICKS) + " ns per tick");
+		assertTrue(perPattern[1] < perTask[1]);
+		assertTrue(indexed[1] < perPattern[1]);
+	}
+
+	/**
+	 * The former launcher loop: every task pattern is matched.
+	 */
+	private static long perTaskLoop(TaskTable table) {
+		int launches = 0;
+		long start = System.nanoTime();
+		for (int t = 0; t < TICKS; t++) {
+			long millis = START + t * 1000L;
+			int size = table.size();
+			for (int j = 0; j < size; j++) {
+				if (table.getSchedulingPattern(j).match(UTC, millis)) {
+					launches++;
+				}
+			}
+		}
+		long ret = System.nanoTime() - start;
+		assertTrue(launches > 0);
+		return ret;
+	}
+
+	/**
+	 * Every distinct pattern is matched once, on the decomposed time.
+	 */
+	private static long perPatternLoop(PatternGroups groups) {
+		int launches = 0;
+		long start = System.nanoTime();
+		for (int t = 0; t < TICKS; t++) {
+			TimeFields fields = new TimeFields(UTC, START + t * 1000L);
+			int size = groups.size();
+			for (int j = 0; j < size; j++) {
+				if (groups.getSchedulingPattern(j).match(fields)) {
+					launches += groups.getTaskIndices(j).length;
+				}
+			}
+		}
+		long ret = System.nanoTime() - start;
+		assertTrue(launches > 0);
+		return ret;
+	}
+
+	/**
+	 * The current launcher loop: only the candidates of the index are matched.
+	 */
+	private static long indexedLoop(PatternGroups groups) {
+		int launches = 0;
+		long start = System.nanoTime();
+		for (int t = 0; t < TICKS; t++) {
+			TimeFields fields = new TimeFields(UTC, START + t * 1000L);
+			int[] candidates = groups.getCandidates(fields);
+			for (int j = 0; j < candidates.length; j++) {
+				if (groups.match(candidates[j], fields)) {
+					launches += groups.getTaskIndices(candidates[j]).length;
+				}
+			}
+		}
+		long ret = System.nanoTime() - start;
+		assertTrue(launches > 0);
+		return ret;
+	}
+
+}
@@ -0,0 +1,142 @@
+package cron4j;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the candidate index of {@link PatternGroups} against a full scan of
+ * the patterns.
+ */
+public class PatternGroupsTest {
+
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+	@Test
+	public void sharedPatternsAreGrouped() {
+		TaskTable table = new TaskTable();
+		table.add(SchedulingPattern.valueOf("0 * * * * *"), new DummyTask());
+		table.add(SchedulingPattern.valueOf("*/10 * * * * *"), new DummyTask());
+		table.add(SchedulingPattern.valueOf("0 * * * * *"), new DummyTask());
+		PatternGroups groups = new PatternGroups(table);
+		assertEquals(2, groups.size());
+		int[] indices = groups.getTaskIndices(0);
+		assertEquals(2, indices.length);
+		assertEquals(0, indices[0]);
+		assertEquals(2, indices[1]);
+	}
+
+	@Test
+	public void equalPatternsAreGrouped() {
+		TaskTable table = new TaskTable();
+		table.add(new SchedulingPattern("0 * * * * *"), new DummyTask());
+		table.add(new SchedulingPattern("*/10 * * * * *"), new DummyTask());
+		table.add(new SchedulingPattern(" 0  *\t* * * * "), new DummyTask());
+		PatternGroups groups = new PatternGroups(table);
+		assertEquals(2, groups.size());
+		assertEquals(2, groups.getTaskIndices(0).length);
+	}
+
+	@Test
+	public void candidatesMatchFullScan() {
+		TaskTable table = randomTable(new Random(16), 2000);
+		PatternGroups groups = new PatternGroups(table);
+		long start = 1767225600000L;
+		// Two hours, second by second, and then a sample of a whole year.
+		for (long t = start; t < start + 7200000L; t += 1000) {
+			checkSecond(table, groups, t);
+		}
+		Random random = new Random(17);
+		for (int i = 0; i < 5000; i++) {
+			long t = start + (random.nextInt(365 * 86400)) * 1000L;
+			checkSecond(table, groups, t);
+		}
+	}
+
+	@Test
+	public void indexScansLessThanTable() {
+		TaskTable table = randomTable(new Random(18), 10000);
+		PatternGroups groups = new PatternGroups(table);
+		long start = 1767225600000L;
+		long scanned = 0;
+		for (long t = start; t < start + 3600000L; t += 1000) {
+			TimeFields fields = new TimeFields(UTC, t);
+			int[] candidates = groups.getCandidates(fields);
+			for (int j = 0; j < candidates.length; j++) {
+				groups.match(candidates[j], fields);
+			}
+			scanned += candidates.length;
+		}
+		// See LauncherBenchmark for the timings.
+		assertTrue(scanned / 3600 < table.size() / 10);
+	}
+
+	private static void checkSecond(TaskTable table, PatternGroups groups,
+			long t) {
+		TimeFields fields = new TimeFields(UTC, t);
+		boolean[] expected = new boolean[table.size()];
+		for (int j = 0; j < expected.length; j++) {
+			expected[j] = table.getSchedulingPattern(j).match(fields);
+		}
+		boolean[] actual = new boolean[table.size()];
+		int[] candidates = groups.getCandidates(fields);
+		for (int j = 0; j < candidates.length; j++) {
+			if (groups.match(candidates[j], fields)) {
+				int[] indices = groups.getTaskIndices(candidates[j]);
+				for (int k = 0; k < indices.length; k++) {
+					assertFalse(actual[indices[k]]);
+					actual[indices[k]] = true;
+				}
+			}
+		}
+		for (int j = 0; j < expected.length; j++) {
+			assertEquals("pattern " + table.getSchedulingPattern(j) + " at "
+					+ t, expected[j], actual[j]);
+		}
+	}
+
+	/**
+	 * Builds a table of random patterns, most of them firing once a minute or
+	 * less.
+	 */
+	static TaskTable randomTable(Random random, int size) {
+		String[] steps = { "*", "*/2", "*/5", "*/15", "*/30" };
+		TaskTable table = new TaskTable();
+		for (int i = 0; i < size; i++) {
+			String second;
+			String minute;
+			switch (random.nextInt(10)) {
+			case 0:
+				second = steps[random.nextInt(steps.length)];
+				minute = "*";
+				break;
+			case 1:
+				second = random.nextInt(60) + "," + random.nextInt(60);
+				minute = random.nextInt(30) + "-" + (30 + random.nextInt(30));
+				break;
+			default:
+				second = String.valueOf(random.nextInt(60));
+				minute = steps[random.nextInt(steps.length)];
+			}
+			String hour = random.nextInt(4) == 0 ? String.valueOf(random
+					.nextInt(24)) : "*";
+			String pattern = second + " " + minute + " " + hour + " * * *";
+			if (random.nextInt(20) == 0) {
+				pattern += "|0 0 12 * * *";
+			}
+			table.add(SchedulingPattern.valueOf(pattern), new DummyTask());
+		}
+		return table;
+	}
+
+	private static class DummyTask extends Task {
+
+		public void execute(TaskExecutionContext context) {
+		}
+
+	}
+
+}
@@ -0,0 +1,34 @@
+package cron4j;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the sharing of {@link SchedulingPattern} instances.
+ */
+public class SchedulingPatternTest {
+
+	@Test
+	public void sharesNormalizedPatterns() {
+		SchedulingPattern a = SchedulingPattern
+				.valueOf("0 * * * * * | 30 1 * * * *");
+		SchedulingPattern b = SchedulingPattern
+				.valueOf("  0 *\t* * * *|30 1 * * * *");
+		assertSame(a, b);
+		assertEquals("0 * * * * *|30 1 * * * *", a.toString());
+	}
+
+	@Test
+	public void keepsSharingAfterManyPatterns() {
+		// More distinct patterns than any fixed size cache would keep.
+		for (int i = 0; i < 5000; i++) {
+			SchedulingPattern.valueOf((i % 60) + " " + ((i / 60) % 60) + " "
+					+ (i / 3600) + " * * *");
+		}
+		SchedulingPattern a = SchedulingPattern.valueOf("7 7 7 7 7 *");
+		SchedulingPattern b = SchedulingPattern.valueOf("7 7 7 7 7 *");
+		assertSame(a, b);
+	}
+
+}
@@ -0,0 +1,91 @@
+package cron4j;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the {@link TimingWheel} against the {@link HeapTimerQueue}.
+ */
+public class TimingWheelTest {
+
+	@Test
+	public void wakeTimeIncludesCascades() {
+		TimingWheel wheel = new TimingWheel(0);
+		ArrayList due = new ArrayList();
+		wheel.add(entry(65000));
+		wheel.pollDue(30000, due);
+		wheel.add(entry(89000));
+		assertTrue(wheel.getWakeTime(30000) <= 65000);
+		long now = 30000;
+		while (due.isEmpty()) {
+			now = wheel.getWakeTime(now);
+			wheel.pollDue(now, due);
+		}
+		assertEquals(65000, now);
+		assertEquals(65000, ((QueuedTask) due.get(0)).time);
+	}
+
+	@Test
+	public void matchesHeapQueue() {
+		Random random = new Random(42);
+		long start = 1000000L * 1000;
+		TimingWheel wheel = new TimingWheel(start);
+		HeapTimerQueue heap = new HeapTimerQueue();
+		long now = start;
+		long end = start + 3L * 86400 * 1000;
+		ArrayList wheelDue = new ArrayList();
+		ArrayList heapDue = new ArrayList();
+		int fired = 0;
+		while (now < end) {
+			// Adds some tasks, due from one second to a few days later.
+			int adds = random.nextInt(4);
+			for (int i = 0; i < adds; i++) {
+				long delay;
+				switch (random.nextInt(4)) {
+				case 0:
+					delay = 1 + random.nextInt(60);
+					break;
+				case 1:
+					delay = 1 + random.nextInt(3600);
+					break;
+				case 2:
+					delay = 1 + random.nextInt(86400);
+					break;
+				default:
+					delay = 1 + random.nextInt(86400 * 3);
+				}
+				QueuedTask entry = entry(now + delay * 1000);
+				wheel.add(entry);
+				heap.add(entry);
+			}
+			// Sleeps as the queue timer would, or less.
+			long wake = wheel.getWakeTime(now);
+			assertTrue(wake <= heap.getWakeTime(now));
+			long next = now + 1000 * (1 + random.nextInt(600));
+			now = Math.min(wake, next);
+			wheel.pollDue(now, wheelDue);
+			heap.pollDue(now, heapDue);
+			assertEquals(new HashSet(heapDue), new HashSet(wheelDue));
+			assertEquals(heapDue.size(), wheelDue.size());
+			for (int i = 0; i < wheelDue.size(); i++) {
+				assertEquals(now, ((QueuedTask) wheelDue.get(i)).time);
+			}
+			fired += wheelDue.size();
+			wheelDue.clear();
+			heapDue.clear();
+		}
+		assertTrue(fired > 0);
+	}
+
+	private static QueuedTask entry(long time) {
+		QueuedTask ret = new QueuedTask(null, null);
+		ret.time = time;
+		return ret;
+	}
+
+}
@@ -0,0 +1,86 @@
+package cron4j;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the scheduler engines on a {@link VirtualClock} and checks that every
+ * task is launched as many times as its pattern matches.
+ */
+public class VirtualClockTest {
+
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+	private static final String[] PATTERNS = { "0 0 * * * *",
+			"*/15 * * * * *", "0 */5 * * * *", "30 0 3 * * *",
+			"10 20 * * * * | 40 */30 * * * *", "0 0 5 * * *" };
+
+	/**
+	 * 2026-01-01 00:00:00 UTC.
+	 */
+	private static final long START = 1767225600000L;
+
+	@Test
+	public void pollingEngineFireCounts() throws Exception {
+		checkFireCounts(Scheduler.POLLING_ENGINE, 6 * 3600000L);
+	}
+
+	@Test
+	public void queueEngineFireCounts() throws Exception {
+		checkFireCounts(Scheduler.QUEUE_ENGINE, 3 * 86400000L);
+	}
+
+	@Test
+	public void wheelEngineFireCounts() throws Exception {
+		checkFireCounts(Scheduler.WHEEL_ENGINE, 3 * 86400000L);
+	}
+
+	@Test
+	public void timeDoesNotPassByItself() throws Exception {
+		VirtualClock clock = new VirtualClock(START);
+		Scheduler scheduler = new Scheduler();
+		scheduler.setClock(clock);
+		scheduler.start();
+		Thread.sleep(100);
+		assertEquals(START, clock.currentTimeMillis());
+		scheduler.stop();
+	}
+
+	private static void checkFireCounts(int engine, long span)
+			throws Exception {
+		VirtualClock clock = new VirtualClock(START);
+		Scheduler scheduler = new Scheduler();
+		scheduler.setClock(clock);
+		scheduler.setEngine(engine);
+		scheduler.setTimeZone(UTC);
+		scheduler.setThreadPoolSize(2);
+		final int[] counts = new int[PATTERNS.length];
+		for (int i = 0; i < PATTERNS.length; i++) {
+			final int index = i;
+			scheduler.schedule(PATTERNS[i], new Runnable() {
+				public void run() {
+					synchronized (counts) {
+						counts[index]++;
+					}
+				}
+			});
+		}
+		scheduler.start();
+		clock.advance(span);
+		// Stopping waits for the last executions.
+		scheduler.stop();
+		long[] buffer = new long[(int) (span / 1000)];
+		for (int i = 0; i < PATTERNS.length; i++) {
+			Predictor predictor = new Predictor(PATTERNS[i], START);
+			predictor.setTimeZone(UTC);
+			int expected = predictor.fillMatchingTimes(START, START + span,
+					buffer);
+			assertTrue(expected > 0);
+			assertEquals(PATTERNS[i], expected, counts[i]);
+		}
+	}
+
+}